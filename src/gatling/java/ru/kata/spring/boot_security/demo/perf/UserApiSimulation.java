@@ -0,0 +1,140 @@
+package ru.kata.spring.boot_security.demo.perf;
+
+import io.gatling.javaapi.core.ChainBuilder;
+import io.gatling.javaapi.core.ScenarioBuilder;
+import io.gatling.javaapi.core.Simulation;
+import io.gatling.javaapi.http.HttpProtocolBuilder;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import static io.gatling.javaapi.core.CoreDsl.*;
+import static io.gatling.javaapi.http.HttpDsl.*;
+
+/**
+ * Load profile against an instance started with the "perf" Spring profile:
+ * readers log in as random seeded users and page through /api/users,
+ * /api/user and /api/users/{id}; writers log in as the seeded admin and
+ * run create, read, patch and delete cycles. Latency percentiles, error
+ * rate and throughput are asserted against the perf.* thresholds.
+ */
+public class UserApiSimulation extends Simulation {
+
+    private static final String BASE_URL = System.getProperty("perf.baseUrl", "http://localhost:8080");
+    private static final long SEEDED_USERS = Long.getLong("perf.seededUsers", 100_000L);
+    private static final String PASSWORD = System.getProperty("perf.password", "password");
+    private static final int READERS = Integer.getInteger("perf.readers", 50);
+    private static final int WRITERS = Integer.getInteger("perf.writers", 5);
+    private static final Duration RAMP = Duration.ofSeconds(Long.getLong("perf.rampSeconds", 10L));
+    private static final Duration DURATION = Duration.ofSeconds(Long.getLong("perf.durationSeconds", 60L));
+
+    private static final int P50_MS = Integer.getInteger("perf.p50Ms", 50);
+    private static final int P99_MS = Integer.getInteger("perf.p99Ms", 500);
+    private static final int P999_MS = Integer.getInteger("perf.p999Ms", 1500);
+    private static final double MAX_ERROR_PERCENT = Double.parseDouble(System.getProperty("perf.maxErrorPercent", "1"));
+    private static final int MIN_RPS = Integer.getInteger("perf.minRps", 100);
+
+    private static final AtomicLong CREATED = new AtomicLong();
+
+    private final HttpProtocolBuilder httpProtocol = http
+            .baseUrl(BASE_URL)
+            .acceptHeader("application/json")
+            .disableFollowRedirect()
+            .disableCaching();
+
+    private final Iterator<Map<String, Object>> seededUsers = Stream.generate(() -> {
+        long id = ThreadLocalRandom.current().nextLong(1, SEEDED_USERS + 1);
+        return Map.<String, Object>of("userId", id, "username", seededUsername(id));
+    }).iterator();
+
+    private final Iterator<Map<String, Object>> newUsers = Stream.generate(
+            () -> Map.<String, Object>of("newUsername", "load" + letters(CREATED.incrementAndGet()))).iterator();
+
+    private static ChainBuilder login(String username) {
+        return exec(http("login")
+                .post("/login")
+                .formParam("username", username)
+                .formParam("password", PASSWORD)
+                .check(status().is(302))
+                .check(header("Location").transform(location -> location.contains("/login")).is(false)))
+                .exitHereIfFailed();
+    }
+
+    private final ScenarioBuilder readers = scenario("readers")
+            .feed(seededUsers)
+            .exec(login("#{username}"))
+            .during(DURATION).on(
+                    exec(http("GET /api/users")
+                            .get("/api/users?limit=50")
+                            .check(status().is(200))
+                            .check(jsonPath("$.nextCursor").saveAs("cursor")))
+                    .exec(http("GET /api/users (next page)")
+                            .get("/api/users?limit=50&after=#{cursor}")
+                            .check(status().is(200)))
+                    .exec(http("GET /api/user")
+                            .get("/api/user")
+                            .check(status().is(200)))
+                    .feed(seededUsers)
+                    .exec(http("GET /api/users/{id}")
+                            .get("/api/users/#{userId}")
+                            .check(status().is(200)))
+                    .pause(Duration.ofMillis(100), Duration.ofMillis(500)));
+
+    private final ScenarioBuilder writers = scenario("writers")
+            .exec(login(seededUsername(1)))
+            .during(DURATION).on(
+                    feed(newUsers)
+                    .exec(http("POST /api/users")
+                            .post("/api/users")
+                            .body(StringBody("{\"username\":\"#{newUsername}\",\"password\":\"" + PASSWORD + "\","
+                                    + "\"name\":\"Load\",\"surname\":\"Test\",\"age\":30,"
+                                    + "\"email\":\"#{newUsername}@perf.local\",\"roles\":[{\"role\":\"ROLE_USER\"}]}"))
+                            .asJson()
+                            .check(status().is(200)))
+                    .exec(http("GET /api/users?username")
+                            .get("/api/users?limit=1&username=#{newUsername}")
+                            .check(status().is(200))
+                            .check(jsonPath("$.users[0].userId").saveAs("createdId")))
+                    .exec(http("PATCH /api/users/{id}")
+                            .patch("/api/users/#{createdId}")
+                            .header("Content-Type", "application/merge-patch+json")
+                            .body(StringBody("{\"age\":42}"))
+                            .check(status().is(200)))
+                    .exec(http("DELETE /api/users/{id}")
+                            .delete("/api/users/#{createdId}")
+                            .check(status().is(200)))
+                    .pause(Duration.ofMillis(200), Duration.ofMillis(1000)));
+
+    {
+        setUp(readers.injectOpen(rampUsers(READERS).during(RAMP)),
+                writers.injectOpen(rampUsers(WRITERS).during(RAMP)))
+                .protocols(httpProtocol)
+                .assertions(
+                        global().responseTime().percentile(50.0).lt(P50_MS),
+                        global().responseTime().percentile(99.0).lt(P99_MS),
+                        global().responseTime().percentile(99.9).lt(P999_MS),
+                        global().failedRequests().percent().lte(MAX_ERROR_PERCENT),
+                        global().requestsPerSec().gte((double) MIN_RPS));
+    }
+
+    private static String seededUsername(long id) {
+        StringBuilder username = new StringBuilder("perf");
+        for (char digit : Long.toString(id).toCharArray()) {
+            username.append((char) ('a' + (digit - '0')));
+        }
+        return username.toString();
+    }
+
+    private static String letters(long n) {
+        StringBuilder letters = new StringBuilder();
+        do {
+            letters.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return letters.toString();
+    }
+}
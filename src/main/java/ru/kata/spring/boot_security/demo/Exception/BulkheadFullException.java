@@ -0,0 +1,7 @@
+package ru.kata.spring.boot_security.demo.Exception;
+
+public class BulkheadFullException extends RuntimeException {
+    public BulkheadFullException(String msg) {
+        super(msg);
+    }
+}
@@ -0,0 +1,9 @@
+package ru.kata.spring.boot_security.demo.Exception;
+
+import org.springframework.security.authentication.InternalAuthenticationServiceException;
+
+public class HashingCapacityExceededException extends InternalAuthenticationServiceException {
+    public HashingCapacityExceededException(String msg) {
+        super(msg);
+    }
+}
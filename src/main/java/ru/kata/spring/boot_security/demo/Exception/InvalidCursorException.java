@@ -0,0 +1,7 @@
+package ru.kata.spring.boot_security.demo.Exception;
+
+public class InvalidCursorException extends IllegalArgumentException {
+    public InvalidCursorException(String msg) {
+        super(msg);
+    }
+}
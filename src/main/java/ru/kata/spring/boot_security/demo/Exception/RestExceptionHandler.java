@@ -0,0 +1,53 @@
+package ru.kata.spring.boot_security.demo.Exception;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+@RestControllerAdvice
+public class RestExceptionHandler {
+
+    @ExceptionHandler(InvalidCursorException.class)
+    public ResponseEntity<ExceptionInfo> invalidCursor(InvalidCursorException e) {
+        return new ResponseEntity<>(new ExceptionInfo(e.getMessage()), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(UnknownRoleException.class)
+    public ResponseEntity<ExceptionInfo> unknownRole(UnknownRoleException e) {
+        return new ResponseEntity<>(new ExceptionInfo(e.getMessage()), HttpStatus.BAD_REQUEST);
+    }
+
+    @ExceptionHandler(HashingCapacityExceededException.class)
+    public ResponseEntity<ExceptionInfo> hashingCapacityExceeded(HashingCapacityExceededException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ExceptionInfo(e.getMessage()));
+    }
+
+    @ExceptionHandler(LoginThrottledException.class)
+    public ResponseEntity<ExceptionInfo> loginThrottled(LoginThrottledException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(e.getRetryAfterSeconds()))
+                .body(new ExceptionInfo(e.getMessage()));
+    }
+
+    @ExceptionHandler(BulkheadFullException.class)
+    public ResponseEntity<ExceptionInfo> bulkheadFull(BulkheadFullException e) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(new ExceptionInfo(e.getMessage()));
+    }
+
+    @ExceptionHandler(UserUsernameExistException.class)
+    public ResponseEntity<ExceptionInfo> usernameExists(UserUsernameExistException e) {
+        return new ResponseEntity<>(new ExceptionInfo(e.getMessage()), HttpStatus.CONFLICT);
+    }
+
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<ExceptionInfo> optimisticLockFailure(ObjectOptimisticLockingFailureException e) {
+        return new ResponseEntity<>(new ExceptionInfo("User was modified"), HttpStatus.PRECONDITION_FAILED);
+    }
+}
@@ -0,0 +1,7 @@
+package ru.kata.spring.boot_security.demo.Exception;
+
+public class UnknownRoleException extends IllegalArgumentException {
+    public UnknownRoleException(String msg) {
+        super(msg);
+    }
+}
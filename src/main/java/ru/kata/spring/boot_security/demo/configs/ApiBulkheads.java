@@ -0,0 +1,108 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.security.concurrent.DelegatingSecurityContextCallable;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import javax.annotation.PreDestroy;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Component
+public class ApiBulkheads {
+
+    private final Bulkhead read;
+    private final Bulkhead write;
+    private final Bulkhead bulk;
+    private final EntityManagerFactory entityManagerFactory;
+    private final boolean openInView;
+
+    public ApiBulkheads(@Value("${app.api.execution:platform}") String execution,
+                        @Value("${app.api.read.threads:6}") int readThreads,
+                        @Value("${app.api.read.queue-capacity:200}") int readQueueCapacity,
+                        @Value("${app.api.write.threads:4}") int writeThreads,
+                        @Value("${app.api.write.queue-capacity:50}") int writeQueueCapacity,
+                        @Value("${app.api.bulk.threads:2}") int bulkThreads,
+                        @Value("${app.api.bulk.queue-capacity:2}") int bulkQueueCapacity,
+                        @Value("${spring.jpa.open-in-view:true}") boolean openInView,
+                        MeterRegistry meterRegistry, EntityManagerFactory entityManagerFactory) {
+        this.entityManagerFactory = entityManagerFactory;
+        this.openInView = openInView;
+        Bulkhead.Mode mode = Bulkhead.Mode.of(execution);
+        this.read = register(new Bulkhead("read", mode, readThreads, readQueueCapacity), meterRegistry);
+        this.write = register(new Bulkhead("write", mode, writeThreads, writeQueueCapacity), meterRegistry);
+        this.bulk = register(new Bulkhead("bulk", mode, bulkThreads, bulkQueueCapacity), meterRegistry);
+    }
+
+    private static Bulkhead register(Bulkhead bulkhead, MeterRegistry meterRegistry) {
+        Gauge.builder("api.bulkhead.active", bulkhead, Bulkhead::getActiveCount)
+                .tag("bulkhead", bulkhead.getName())
+                .register(meterRegistry);
+        Gauge.builder("api.bulkhead.queued", bulkhead, Bulkhead::getQueueDepth)
+                .tag("bulkhead", bulkhead.getName())
+                .register(meterRegistry);
+        FunctionCounter.builder("api.bulkhead.rejected", bulkhead, Bulkhead::getRejectedCount)
+                .tag("bulkhead", bulkhead.getName())
+                .register(meterRegistry);
+        return bulkhead;
+    }
+
+    public <T> CompletableFuture<T> read(Callable<T> task) {
+        return read.submit(propagate(task));
+    }
+
+    public <T> CompletableFuture<T> write(Callable<T> task) {
+        return write.submit(propagate(task));
+    }
+
+    public <T> CompletableFuture<T> bulk(Callable<T> task) {
+        return bulk.submit(propagate(task));
+    }
+
+    private <T> Callable<T> propagate(Callable<T> task) {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        Object total = attributes != null
+                ? attributes.getAttribute(StatementCounter.REQUEST_ATTRIBUTE, RequestAttributes.SCOPE_REQUEST)
+                : null;
+        Callable<T> counted = total instanceof AtomicInteger
+                ? StatementCounter.counting(task, (AtomicInteger) total)
+                : task;
+        PrimaryReadWindow window = PrimaryReadWindow.current();
+        Callable<T> windowed = window != null ? PrimaryReadWindow.binding(counted, window) : counted;
+        return new DelegatingSecurityContextCallable<>(inView(windowed));
+    }
+
+    private <T> Callable<T> inView(Callable<T> task) {
+        return () -> {
+            if (!openInView || TransactionSynchronizationManager.hasResource(entityManagerFactory)) {
+                return task.call();
+            }
+            EntityManager entityManager = entityManagerFactory.createEntityManager();
+            TransactionSynchronizationManager.bindResource(entityManagerFactory,
+                    new EntityManagerHolder(entityManager));
+            try {
+                return task.call();
+            } finally {
+                TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+                entityManager.close();
+            }
+        };
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        read.shutdown();
+        write.shutdown();
+        bulk.shutdown();
+    }
+}
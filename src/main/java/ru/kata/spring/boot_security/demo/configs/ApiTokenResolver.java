@@ -0,0 +1,24 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.springframework.security.oauth2.server.resource.web.BearerTokenResolver;
+import org.springframework.security.oauth2.server.resource.web.DefaultBearerTokenResolver;
+
+import javax.servlet.http.HttpServletRequest;
+
+public class ApiTokenResolver implements BearerTokenResolver {
+
+    private static final String EVENTS_PATH = "/api/users/events";
+
+    private final DefaultBearerTokenResolver headerResolver = new DefaultBearerTokenResolver();
+    private final DefaultBearerTokenResolver queryResolver = new DefaultBearerTokenResolver();
+
+    public ApiTokenResolver() {
+        queryResolver.setAllowUriQueryParameter(true);
+    }
+
+    @Override
+    public String resolve(HttpServletRequest request) {
+        String path = request.getRequestURI().substring(request.getContextPath().length());
+        return EVENTS_PATH.equals(path) ? queryResolver.resolve(request) : headerResolver.resolve(request);
+    }
+}
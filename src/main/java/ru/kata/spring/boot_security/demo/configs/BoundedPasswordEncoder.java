@@ -0,0 +1,74 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+public class BoundedPasswordEncoder implements PasswordEncoder {
+
+    private final PasswordEncoder delegate;
+    private final PasswordHashingExecutor executor;
+    private final Timer encodeTimer;
+    private final Timer matchesTimer;
+
+    public BoundedPasswordEncoder(PasswordEncoder delegate, PasswordHashingExecutor executor,
+                                  MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.executor = executor;
+        this.encodeTimer = hashingTimer(meterRegistry, "encode");
+        this.matchesTimer = hashingTimer(meterRegistry, "matches");
+    }
+
+    private static Timer hashingTimer(MeterRegistry meterRegistry, String operation) {
+        return Timer.builder("password.hashing")
+                .tag("operation", operation)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return executor.execute(() -> encodeTimer.record(() -> delegate.encode(rawPassword)));
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        return executor.execute(() -> matchesTimer.record(
+                () -> delegate.matches(rawPassword, encodedPassword)));
+    }
+
+    public List<String> encodeAll(List<String> rawPasswords, int parallelism) {
+        if (rawPasswords.isEmpty()) {
+            return new ArrayList<>();
+        }
+        int slices = Math.max(1, Math.min(parallelism, rawPasswords.size()));
+        int sliceSize = (rawPasswords.size() + slices - 1) / slices;
+        List<Callable<List<String>>> tasks = new ArrayList<>(slices);
+        for (int from = 0; from < rawPasswords.size(); from += sliceSize) {
+            List<String> slice = rawPasswords.subList(from, Math.min(from + sliceSize, rawPasswords.size()));
+            tasks.add(() -> {
+                List<String> hashes = new ArrayList<>(slice.size());
+                for (String raw : slice) {
+                    hashes.add(encodeTimer.record(() -> delegate.encode(raw)));
+                }
+                return hashes;
+            });
+        }
+        List<String> hashes = new ArrayList<>(rawPasswords.size());
+        executor.executeAll(tasks, sliceSize).forEach(hashes::addAll);
+        return hashes;
+    }
+
+    public int getHashingThreads() {
+        return executor.getPoolSize();
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+}
@@ -0,0 +1,147 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserCache;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Login lookups by username, bounded in size and age. Invalidation happens
+ * after commit, so a load that read the row before the commit could cache
+ * the old hash or roles afterwards; loaders take a {@link #stamp()} before
+ * reading and the put is dropped if any invalidation happened since.
+ */
+@Component
+public class BoundedUserCache implements UserCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+    private final Map<Long, String> usernamesById = new HashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    public BoundedUserCache(@Value("${app.user-cache.max-size:10000}") int maxSize,
+                            @Value("${app.user-cache.ttl:PT5M}") Duration ttl) {
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl.toNanos();
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    @Override
+    public UserDetails getUserFromCache(String username) {
+        synchronized (entries) {
+            Entry entry = entries.get(username);
+            if (entry != null && entry.expiresAt - System.nanoTime() > 0) {
+                hits.incrementAndGet();
+                return entry.user;
+            }
+            if (entry != null) {
+                remove(username);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public long stamp() {
+        return generation.get();
+    }
+
+    @Override
+    public void putUserInCache(UserDetails user) {
+        putUserInCache(user, generation.get());
+    }
+
+    public void putUserInCache(UserDetails user, long stamp) {
+        if (maxSize <= 0 || !(user instanceof CachedUserDetails)) {
+            return;
+        }
+        CachedUserDetails details = (CachedUserDetails) user;
+        synchronized (entries) {
+            if (generation.get() != stamp) {
+                return;
+            }
+            remove(details.getUsername());
+            entries.put(details.getUsername(), new Entry(details, System.nanoTime() + ttlNanos));
+            usernamesById.put(details.getUserId(), details.getUsername());
+            while (entries.size() > maxSize) {
+                remove(entries.keySet().iterator().next());
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void removeUserFromCache(String username) {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            if (remove(username) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    public void removeUserFromCache(Long userId) {
+        generation.incrementAndGet();
+        synchronized (entries) {
+            String username = usernamesById.get(userId);
+            if (username != null && remove(username) != null) {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getUserId() != null) {
+            removeUserFromCache(event.getUserId());
+        }
+        if (event.getUsername() != null) {
+            removeUserFromCache(event.getUsername());
+        }
+    }
+
+    public Map<String, Long> stats() {
+        Map<String, Long> stats = new LinkedHashMap<>();
+        synchronized (entries) {
+            stats.put("size", (long) entries.size());
+        }
+        stats.put("hits", hits.get());
+        stats.put("misses", misses.get());
+        stats.put("evictions", evictions.get());
+        stats.put("invalidations", invalidations.get());
+        return stats;
+    }
+
+    private Entry remove(String username) {
+        Entry entry = entries.remove(username);
+        if (entry != null) {
+            usernamesById.remove(entry.user.getUserId());
+        }
+        return entry;
+    }
+
+    private static final class Entry {
+        final CachedUserDetails user;
+        final long expiresAt;
+
+        Entry(CachedUserDetails user, long expiresAt) {
+            this.user = user;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
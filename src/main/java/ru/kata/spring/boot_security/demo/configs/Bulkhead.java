@@ -0,0 +1,147 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import ru.kata.spring.boot_security.demo.Exception.BulkheadFullException;
+
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Admits at most {@code threads + queueCapacity} tasks and runs at most
+ * {@code threads} of them at once. {@link Mode#PLATFORM} uses a fixed pool,
+ * {@link Mode#VIRTUAL} starts a virtual thread per task (JDK 21+) and
+ * {@link Mode#DIRECT} runs tasks on the caller without any limit.
+ */
+public class Bulkhead {
+
+    public enum Mode {
+        DIRECT, PLATFORM, VIRTUAL;
+
+        public static Mode of(String value) {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        }
+    }
+
+    private final String name;
+    private final Mode mode;
+    private final int threads;
+    private final ExecutorService executor;
+    private final Semaphore admission;
+    private final Semaphore running;
+    private final AtomicInteger active = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+
+    public Bulkhead(String name, Mode mode, int threads, int queueCapacity) {
+        this.name = name;
+        this.mode = mode;
+        this.threads = threads;
+        this.admission = new Semaphore(threads + queueCapacity);
+        this.running = new Semaphore(threads);
+        if (mode == Mode.PLATFORM) {
+            AtomicInteger counter = new AtomicInteger();
+            this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                    new LinkedBlockingQueue<>(),
+                    runnable -> {
+                        Thread thread = new Thread(runnable, "api-" + name + "-" + counter.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+        } else if (mode == Mode.VIRTUAL) {
+            this.executor = virtualThreadPerTaskExecutor();
+        } else {
+            this.executor = null;
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        if (mode == Mode.DIRECT) {
+            complete(result, task);
+            return result;
+        }
+        if (!admission.tryAcquire()) {
+            rejected.increment();
+            throw new BulkheadFullException("Too many concurrent " + name + " requests, try again later");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    running.acquireUninterruptibly();
+                    try {
+                        complete(result, task);
+                    } finally {
+                        running.release();
+                    }
+                } finally {
+                    admission.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            admission.release();
+            throw e;
+        }
+        return result;
+    }
+
+    private <T> void complete(CompletableFuture<T> result, Callable<T> task) {
+        active.incrementAndGet();
+        try {
+            result.complete(task.call());
+        } catch (Throwable e) {
+            result.completeExceptionally(e);
+        } finally {
+            active.decrementAndGet();
+        }
+    }
+
+    private static ExecutorService virtualThreadPerTaskExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Virtual threads need JDK 21 or newer, current is "
+                    + System.getProperty("java.version"), e);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Mode getMode() {
+        return mode;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    public int getActiveCount() {
+        return active.get();
+    }
+
+    public int getQueueDepth() {
+        return mode == Mode.DIRECT ? 0 : running.getQueueLength() + queuedInExecutor();
+    }
+
+    private int queuedInExecutor() {
+        return executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor) executor).getQueue().size() : 0;
+    }
+
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+}
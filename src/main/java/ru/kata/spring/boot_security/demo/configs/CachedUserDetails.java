@@ -0,0 +1,83 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.Collection;
+import java.util.List;
+
+public final class CachedUserDetails implements UserDetails {
+
+    private final Long userId;
+    private final String username;
+    private final String password;
+    private final List<GrantedAuthority> authorities;
+
+    private CachedUserDetails(Long userId, String username, String password, List<GrantedAuthority> authorities) {
+        this.userId = userId;
+        this.username = username;
+        this.password = password;
+        this.authorities = authorities;
+    }
+
+    public static CachedUserDetails of(User user) {
+        return new CachedUserDetails(user.getUserId(), user.getUsername(), user.getPassword(),
+                List.copyOf(user.getAuthorities()));
+    }
+
+    public CachedUserDetails withPassword(String newPassword) {
+        return new CachedUserDetails(userId, username, newPassword, authorities);
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return authorities;
+    }
+
+    @Override
+    public String getPassword() {
+        return password;
+    }
+
+    @Override
+    public String getUsername() {
+        return username;
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof CachedUserDetails)) return false;
+        return username.equals(((CachedUserDetails) o).username);
+    }
+
+    @Override
+    public int hashCode() {
+        return username.hashCode();
+    }
+}
@@ -0,0 +1,96 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Sizes every Hikari pool to min(cores * 2 + spindles, expected concurrency)
+ * unless spring.datasource.hikari.maximum-pool-size is set explicitly. The
+ * expected concurrency counts every thread that can hold a connection at
+ * once: the read, write and bulk bulkheads, logins (bounded by the hashing
+ * pool, since the user lookup precedes the hash) and the two startup index
+ * rebuilds. The SSE dispatcher builds deltas from the event payload and
+ * never touches the database.
+ * <p>
+ * Exports and bulk imports hold one connection for their whole run, up to
+ * app.api.bulk.timeout, so with a leak-detection threshold configured they
+ * are reported as leaks and then as "unleaked" once they return it.
+ */
+@Configuration
+@ConditionalOnClass(HikariDataSource.class)
+public class DataSourcePoolConfig {
+
+    private static final int BACKGROUND_CONNECTIONS = 2;
+
+    @Bean
+    public static BeanPostProcessor hikariPoolSizing(Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof HikariDataSource) {
+                    HikariDataSource dataSource = (HikariDataSource) bean;
+                    if (!environment.containsProperty("spring.datasource.hikari.maximum-pool-size")) {
+                        int size = poolSize(environment);
+                        dataSource.setMaximumPoolSize(size);
+                        if (!environment.containsProperty("spring.datasource.hikari.minimum-idle")) {
+                            dataSource.setMinimumIdle(size);
+                        }
+                    }
+                    if (dataSource.getPoolName() == null) {
+                        dataSource.setPoolName(beanName);
+                    }
+                }
+                return bean;
+            }
+        };
+    }
+
+    static int poolSize(Environment environment) {
+        int explicit = environment.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 0);
+        if (explicit > 0) {
+            return explicit;
+        }
+        int configured = environment.getProperty("app.datasource.pool-size", Integer.class, 0);
+        if (configured > 0) {
+            return configured;
+        }
+        int cores = Runtime.getRuntime().availableProcessors();
+        int spindles = environment.getProperty("app.datasource.effective-spindles", Integer.class, 1);
+        int concurrency = environment.getProperty("app.datasource.expected-concurrency", Integer.class, 0);
+        if (concurrency <= 0) {
+            int hashing = environment.getProperty("app.hashing.threads", Integer.class, 0);
+            concurrency = environment.getProperty("app.api.read.threads", Integer.class, 6)
+                    + environment.getProperty("app.api.write.threads", Integer.class, 4)
+                    + environment.getProperty("app.api.bulk.threads", Integer.class, 2)
+                    + (hashing > 0 ? hashing : cores)
+                    + BACKGROUND_CONNECTIONS;
+        }
+        return Math.max(2, Math.min(cores * 2 + spindles, concurrency));
+    }
+
+    @Bean
+    public MeterBinder hikariPoolSaturation(ObjectProvider<HikariDataSource> dataSources) {
+        return registry -> dataSources.orderedStream().forEach(hikari ->
+                Gauge.builder("hikaricp.connections.saturation", hikari, DataSourcePoolConfig::saturation)
+                        .tag("pool", hikari.getPoolName())
+                        .description("(active + pending) / max connections")
+                        .register(registry));
+    }
+
+    private static double saturation(HikariDataSource dataSource) {
+        HikariPoolMXBean pool = dataSource.getHikariPoolMXBean();
+        if (pool == null) {
+            return 0;
+        }
+        return (double) (pool.getActiveConnections() + pool.getThreadsAwaitingConnection())
+                / dataSource.getMaximumPoolSize();
+    }
+}
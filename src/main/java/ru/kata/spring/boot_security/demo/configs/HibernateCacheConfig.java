@@ -0,0 +1,104 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.JCacheMetrics;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.core.config.DefaultConfiguration;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.ehcache.jsr107.EhcacheCachingProvider;
+import org.hibernate.cache.spi.RegionFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+import java.net.URI;
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+
+@Configuration
+public class HibernateCacheConfig {
+
+    public static final String USER_REGION = "user";
+    public static final String USER_ROLES_REGION = "user.roles";
+    public static final String ROLE_REGION = "role";
+    public static final String USER_BY_USERNAME_REGION = "user.by-username";
+
+    private static final Map<String, Long> DEFAULT_MAX_ENTRIES = Map.of(
+            USER_REGION, 10_000L,
+            USER_ROLES_REGION, 10_000L,
+            ROLE_REGION, 100L,
+            USER_BY_USERNAME_REGION, 10_000L,
+            RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, 1_000L);
+
+    private static final Map<String, Duration> DEFAULT_TTL = Map.of(
+            USER_REGION, Duration.ofMinutes(10),
+            USER_ROLES_REGION, Duration.ofMinutes(10),
+            ROLE_REGION, Duration.ofHours(1),
+            USER_BY_USERNAME_REGION, Duration.ofMinutes(5),
+            RegionFactory.DEFAULT_QUERY_RESULTS_REGION_UNQUALIFIED_NAME, Duration.ofMinutes(5));
+
+    @Bean(destroyMethod = "close")
+    @ConditionalOnProperty(name = "app.l2-cache.enabled", havingValue = "true", matchIfMissing = true)
+    public CacheManager hibernateCacheManager(Environment environment) {
+        EhcacheCachingProvider provider = (EhcacheCachingProvider) Caching.getCachingProvider(
+                EhcacheCachingProvider.class.getName());
+        CacheManager cacheManager = provider.getCacheManager(URI.create("hibernate-l2-" + UUID.randomUUID()),
+                new DefaultConfiguration(getClass().getClassLoader()));
+        DEFAULT_MAX_ENTRIES.forEach((region, defaultMaxEntries) -> {
+            long maxEntries = environment.getProperty("app.l2-cache." + region + ".max-entries",
+                    Long.class, defaultMaxEntries);
+            Duration ttl = environment.getProperty("app.l2-cache." + region + ".ttl",
+                    Duration.class, DEFAULT_TTL.get(region));
+            cacheManager.createCache(region, Eh107Configuration.fromEhcacheCacheConfiguration(
+                    CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                                    ResourcePoolsBuilder.heap(maxEntries))
+                            .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(ttl))));
+        });
+        long timestamps = environment.getProperty("app.l2-cache.update-timestamps.max-entries", Long.class, 1_000L);
+        cacheManager.createCache(RegionFactory.DEFAULT_UPDATE_TIMESTAMPS_REGION_UNQUALIFIED_NAME,
+                Eh107Configuration.fromEhcacheCacheConfiguration(
+                        CacheConfigurationBuilder.newCacheConfigurationBuilder(Object.class, Object.class,
+                                ResourcePoolsBuilder.heap(timestamps))));
+        for (String region : cacheManager.getCacheNames()) {
+            cacheManager.enableStatistics(region, true);
+        }
+        return cacheManager;
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.l2-cache.enabled", havingValue = "true", matchIfMissing = true)
+    public HibernatePropertiesCustomizer hibernateSecondLevelCache(CacheManager hibernateCacheManager,
+                                                                   ObjectProvider<MeterRegistry> meterRegistry) {
+        meterRegistry.ifAvailable(registry -> {
+            for (String region : hibernateCacheManager.getCacheNames()) {
+                JCacheMetrics.monitor(registry, hibernateCacheManager.getCache(region));
+            }
+        });
+        return properties -> {
+            properties.put("hibernate.cache.use_second_level_cache", true);
+            properties.put("hibernate.cache.use_query_cache", true);
+            properties.put("hibernate.cache.region.factory_class", "jcache");
+            properties.put("hibernate.javax.cache.cache_manager", hibernateCacheManager);
+            properties.put("hibernate.javax.cache.missing_cache_strategy", "fail");
+            properties.put("hibernate.generate_statistics", true);
+        };
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.l2-cache.enabled", havingValue = "false")
+    public HibernatePropertiesCustomizer hibernateSecondLevelCacheDisabled() {
+        return properties -> {
+            properties.put("hibernate.cache.use_second_level_cache", false);
+            properties.put("hibernate.cache.use_query_cache", false);
+            properties.put("javax.persistence.sharedCache.mode", "NONE");
+        };
+    }
+}
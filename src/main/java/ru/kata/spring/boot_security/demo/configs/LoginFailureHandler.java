@@ -0,0 +1,38 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.web.authentication.SimpleUrlAuthenticationFailureHandler;
+import org.springframework.stereotype.Component;
+import ru.kata.spring.boot_security.demo.Exception.HashingCapacityExceededException;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+@Component
+public class LoginFailureHandler extends SimpleUrlAuthenticationFailureHandler {
+
+    private final ObjectProvider<LoginThrottle> loginThrottle;
+
+    public LoginFailureHandler(ObjectProvider<LoginThrottle> loginThrottle) {
+        super("/login?error");
+        this.loginThrottle = loginThrottle;
+    }
+
+    @Override
+    public void onAuthenticationFailure(HttpServletRequest request,
+                                        HttpServletResponse response,
+                                        AuthenticationException exception) throws IOException, ServletException {
+        if (exception instanceof HashingCapacityExceededException) {
+            response.setHeader("Retry-After", "1");
+            response.sendError(HttpStatus.TOO_MANY_REQUESTS.value(), exception.getMessage());
+            return;
+        }
+        loginThrottle.ifAvailable(throttle ->
+                throttle.recordFailure(request.getParameter(SecurityConfig.USERNAME_PARAMETER)));
+        super.onAuthenticationFailure(request, response, exception);
+    }
+}
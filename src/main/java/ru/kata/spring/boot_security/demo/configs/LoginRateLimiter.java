@@ -0,0 +1,118 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Token buckets keyed by an arbitrary string, spread over independently
+ * locked stripes so concurrent logins for different keys rarely contend.
+ * Each stripe keeps its buckets in access order and drops those idle long
+ * enough to have refilled completely, which is indistinguishable from a
+ * fresh bucket; the per-stripe size cap only kicks in under key floods.
+ */
+public class LoginRateLimiter {
+
+    private final Stripe[] stripes;
+    private final int mask;
+    private final int maxPerStripe;
+    private final double capacity;
+    private final long refillNanos;
+    private final long idleNanos;
+
+    public LoginRateLimiter(int capacity, Duration refillInterval, int maxEntries, int stripeCount) {
+        int size = 1;
+        while (size < stripeCount) {
+            size <<= 1;
+        }
+        this.stripes = new Stripe[size];
+        for (int i = 0; i < size; i++) {
+            stripes[i] = new Stripe();
+        }
+        this.mask = size - 1;
+        this.maxPerStripe = Math.max(1, maxEntries / size);
+        this.capacity = Math.max(1, capacity);
+        this.refillNanos = Math.max(1, refillInterval.toNanos());
+        this.idleNanos = (long) (this.capacity * refillNanos);
+    }
+
+    /**
+     * Takes a token for the key and returns 0, or leaves the bucket untouched
+     * and returns the nanoseconds until the next token is available.
+     */
+    public long tryAcquire(String key, long now) {
+        int hash = key.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & mask];
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                bucket = new Bucket(capacity, now);
+                stripe.buckets.put(key, bucket);
+                evict(stripe, now);
+            } else {
+                bucket.tokens = Math.min(capacity, bucket.tokens + (double) (now - bucket.updated) / refillNanos);
+                bucket.updated = now;
+            }
+            if (bucket.tokens >= 1) {
+                bucket.tokens -= 1;
+                return 0;
+            }
+            return (long) Math.ceil((1 - bucket.tokens) * refillNanos);
+        }
+    }
+
+    /**
+     * Returns 0 if the key has a token, or the nanoseconds until it will,
+     * without taking one or creating a bucket.
+     */
+    public long waitNanos(String key, long now) {
+        int hash = key.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & mask];
+        synchronized (stripe) {
+            Bucket bucket = stripe.buckets.get(key);
+            if (bucket == null) {
+                return 0;
+            }
+            double tokens = Math.min(capacity, bucket.tokens + (double) (now - bucket.updated) / refillNanos);
+            return tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) * refillNanos);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                size += stripe.buckets.size();
+            }
+        }
+        return size;
+    }
+
+    private void evict(Stripe stripe, long now) {
+        Iterator<Bucket> eldest = stripe.buckets.values().iterator();
+        while (eldest.hasNext()) {
+            Bucket bucket = eldest.next();
+            if (stripe.buckets.size() <= maxPerStripe && now - bucket.updated < idleNanos) {
+                return;
+            }
+            eldest.remove();
+        }
+    }
+
+    private static final class Stripe {
+
+        private final Map<String, Bucket> buckets = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    private static final class Bucket {
+
+        private double tokens;
+        private long updated;
+
+        private Bucket(double tokens, long updated) {
+            this.tokens = tokens;
+            this.updated = updated;
+        }
+    }
+}
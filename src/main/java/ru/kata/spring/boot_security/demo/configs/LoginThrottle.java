@@ -0,0 +1,87 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Login attempt limits shared by form login and the token endpoint. Every
+ * attempt costs a token from the client address; only failed attempts cost
+ * one from the username bucket, which is keyed by the normalized username
+ * alone so that guesses spread over many addresses still add up. Its burst
+ * is sized so that someone failing on purpose can slow a user's logins but
+ * not stop them for long. The address is
+ * {@code getRemoteAddr()}: behind a reverse proxy set
+ * {@code server.forward-headers-strategy} so it is the client's, not the
+ * proxy's, or every client will share one bucket.
+ */
+public class LoginThrottle {
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final LoginRateLimiter addresses;
+    private final LoginRateLimiter usernames;
+    private final Counter throttledAddresses;
+    private final Counter throttledUsernames;
+
+    public LoginThrottle(LoginRateLimiter addresses, LoginRateLimiter usernames, MeterRegistry meterRegistry) {
+        this.addresses = addresses;
+        this.usernames = usernames;
+        this.throttledAddresses = throttledCounter(meterRegistry, "ip");
+        this.throttledUsernames = throttledCounter(meterRegistry, "username");
+        Gauge.builder("login.throttle.buckets", addresses, LoginRateLimiter::size)
+                .tag("limit", "ip")
+                .register(meterRegistry);
+        Gauge.builder("login.throttle.buckets", usernames, LoginRateLimiter::size)
+                .tag("limit", "username")
+                .register(meterRegistry);
+    }
+
+    private static Counter throttledCounter(MeterRegistry meterRegistry, String limit) {
+        return Counter.builder("login.throttled")
+                .tag("limit", limit)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Charges an attempt to the address and returns 0, or returns the
+     * nanoseconds to wait if the address or the username is out of attempts.
+     */
+    public long tryAcquire(String address, String username) {
+        long now = System.nanoTime();
+        long wait = addresses.tryAcquire(key(address), now);
+        if (wait > 0) {
+            throttledAddresses.increment();
+            return wait;
+        }
+        if (username != null) {
+            wait = usernames.waitNanos(usernameKey(username), now);
+            if (wait > 0) {
+                throttledUsernames.increment();
+                return wait;
+            }
+        }
+        return 0;
+    }
+
+    public void recordFailure(String username) {
+        if (username != null) {
+            usernames.tryAcquire(usernameKey(username), System.nanoTime());
+        }
+    }
+
+    public static long retryAfterSeconds(long waitNanos) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(waitNanos) + 1);
+    }
+
+    private static String usernameKey(String username) {
+        return key(username.trim().toLowerCase(Locale.ROOT));
+    }
+
+    private static String key(String value) {
+        return value.length() > MAX_KEY_LENGTH ? value.substring(0, MAX_KEY_LENGTH) : value;
+    }
+}
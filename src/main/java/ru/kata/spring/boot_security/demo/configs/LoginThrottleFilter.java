@@ -0,0 +1,55 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.filter.GenericFilterBean;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+public class LoginThrottleFilter extends GenericFilterBean {
+
+    private final String loginProcessingUrl;
+    private final String usernameParameter;
+    private final LoginThrottle throttle;
+
+    public LoginThrottleFilter(String loginProcessingUrl, String usernameParameter, LoginThrottle throttle) {
+        this.loginProcessingUrl = loginProcessingUrl;
+        this.usernameParameter = usernameParameter;
+        this.throttle = throttle;
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse,
+                         FilterChain filterChain) throws IOException, ServletException {
+        HttpServletRequest request = (HttpServletRequest) servletRequest;
+        HttpServletResponse response = (HttpServletResponse) servletResponse;
+        if (!isLoginRequest(request)) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+        long wait = throttle.tryAcquire(request.getRemoteAddr(), request.getParameter(usernameParameter));
+        if (wait > 0) {
+            reject(response, wait);
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+
+    private boolean isLoginRequest(HttpServletRequest request) {
+        return "POST".equals(request.getMethod()) && request.getPathInfo() == null
+                && loginProcessingUrl.equals(request.getServletPath());
+    }
+
+    private static void reject(HttpServletResponse response, long waitNanos) throws IOException {
+        response.setHeader("Retry-After", Long.toString(LoginThrottle.retryAfterSeconds(waitNanos)));
+        response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+        response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+        response.getWriter().write("Too many login attempts");
+    }
+}
@@ -0,0 +1,52 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import ch.qos.logback.classic.LoggerContext;
+import io.micrometer.core.aop.TimedAspect;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+
+@Configuration
+public class MetricsConfig {
+
+    @Bean
+    public TimedAspect timedAspect(MeterRegistry meterRegistry) {
+        return new TimedAspect(meterRegistry);
+    }
+
+    @Bean
+    public FilterRegistrationBean<RequestStatementMetricsFilter> requestStatementMetricsFilter(
+            MeterRegistry meterRegistry) {
+        FilterRegistrationBean<RequestStatementMetricsFilter> registration =
+                new FilterRegistrationBean<>(new RequestStatementMetricsFilter(meterRegistry));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 1);
+        return registration;
+    }
+
+    @Bean
+    public HibernatePropertiesCustomizer hibernateStatementMetrics(
+            @Value("${app.slow-query.threshold-ms:200}") long slowQueryThresholdMs) {
+        return properties -> {
+            properties.put("hibernate.session_factory.statement_inspector", new StatementCounter());
+            properties.put("hibernate.session.events.log.LOG_QUERIES_SLOWER_THAN_MS", slowQueryThresholdMs);
+        };
+    }
+
+    @Bean(destroyMethod = "stop")
+    public SlowQueryLogSampler slowQueryLogSampler(@Value("${app.slow-query.sample-rate:1.0}") double sampleRate,
+                                                   MeterRegistry meterRegistry) {
+        SlowQueryLogSampler sampler = new SlowQueryLogSampler(sampleRate, meterRegistry);
+        if (LoggerFactory.getILoggerFactory() instanceof LoggerContext) {
+            LoggerContext context = (LoggerContext) LoggerFactory.getILoggerFactory();
+            sampler.setContext(context);
+            sampler.start();
+            context.addTurboFilter(sampler);
+        }
+        return sampler;
+    }
+}
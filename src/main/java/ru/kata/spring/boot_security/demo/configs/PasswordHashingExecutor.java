@@ -0,0 +1,181 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ru.kata.spring.boot_security.demo.Exception.HashingCapacityExceededException;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Component
+public class PasswordHashingExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final long timeoutNanos;
+    private final int poolSize;
+    private final AtomicLong backlogNanos = new AtomicLong();
+    private volatile long hashNanos;
+
+    public PasswordHashingExecutor(@Value("${app.hashing.threads:0}") int threads,
+                                   @Value("${app.hashing.queue-capacity:64}") int queueCapacity,
+                                   @Value("${app.hashing.timeout:PT5S}") Duration timeout) {
+        int poolSize = threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "password-hashing-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+        this.timeoutNanos = timeout.toNanos();
+        this.poolSize = poolSize;
+    }
+
+    public <T> T execute(Callable<T> task) {
+        admit(1, 1, timeoutNanos);
+        Future<T> future = submit(task, 1);
+        try {
+            return future.get(timeoutNanos, TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            cancel(future);
+            throw new HashingCapacityExceededException("Password operation timed out, try again later");
+        } catch (InterruptedException e) {
+            cancel(future);
+            Thread.currentThread().interrupt();
+            throw new HashingCapacityExceededException("Password operation interrupted");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public <T> List<T> executeAll(List<Callable<T>> tasks, int hashesPerTask) {
+        int hashes = Math.max(1, hashesPerTask);
+        long budget = timeoutNanos * hashes;
+        admit(tasks.size(), hashes, budget);
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        try {
+            for (Callable<T> task : tasks) {
+                futures.add(submit(task, hashes));
+            }
+        } catch (HashingCapacityExceededException e) {
+            futures.forEach(this::cancel);
+            throw e;
+        }
+        long deadline = System.nanoTime() + budget;
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS));
+            }
+            return results;
+        } catch (TimeoutException e) {
+            futures.forEach(this::cancel);
+            throw new HashingCapacityExceededException("Password operation timed out, try again later");
+        } catch (InterruptedException e) {
+            futures.forEach(this::cancel);
+            Thread.currentThread().interrupt();
+            throw new HashingCapacityExceededException("Password operation interrupted");
+        } catch (ExecutionException e) {
+            futures.forEach(this::cancel);
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void admit(int tasks, int hashesPerTask, long budgetNanos) {
+        long estimate = hashNanos;
+        if (estimate == 0) {
+            return;
+        }
+        long expected = (backlogNanos.get() + tasks * hashesPerTask * estimate) / poolSize + hashesPerTask * estimate;
+        if (expected > budgetNanos) {
+            throw new HashingCapacityExceededException("Too many concurrent password operations, try again later");
+        }
+    }
+
+    private <T> Future<T> submit(Callable<T> task, int hashes) {
+        HashingTask<T> hashing = new HashingTask<>(task, hashes, hashes * hashNanos);
+        backlogNanos.addAndGet(hashing.cost);
+        try {
+            executor.execute(hashing);
+            return hashing;
+        } catch (RejectedExecutionException e) {
+            backlogNanos.addAndGet(-hashing.cost);
+            throw new HashingCapacityExceededException("Too many concurrent password operations, try again later");
+        }
+    }
+
+    private void cancel(Future<?> future) {
+        HashingTask<?> hashing = (HashingTask<?>) future;
+        if (executor.remove(hashing)) {
+            backlogNanos.addAndGet(-hashing.cost);
+        }
+        hashing.cancel(true);
+    }
+
+    public int getPoolSize() {
+        return executor.getCorePoolSize();
+    }
+
+    public int getQueueDepth() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    public long getBacklogNanos() {
+        return backlogNanos.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private final class HashingTask<T> extends FutureTask<T> {
+
+        private final int hashes;
+        private final long cost;
+
+        private HashingTask(Callable<T> task, int hashes, long cost) {
+            super(task);
+            this.hashes = hashes;
+            this.cost = cost;
+        }
+
+        @Override
+        public void run() {
+            long start = System.nanoTime();
+            try {
+                super.run();
+            } finally {
+                long perHash = (System.nanoTime() - start) / hashes;
+                long previous = hashNanos;
+                hashNanos = previous == 0 ? perHash : previous - (previous >> 3) + (perHash >> 3);
+                backlogNanos.addAndGet(-cost);
+            }
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import javax.servlet.http.Cookie;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.util.concurrent.Callable;
+
+/**
+ * Read-your-writes window of one client, carried in a cookie so that reads
+ * after a write stay on the primary whichever node serves them and however
+ * the client authenticates. The cookie only holds a deadline; a forged one
+ * can at most keep its own client on the primary for one sticky window.
+ * Bound to the request thread by {@link PrimaryReadWindowFilter} and to
+ * bulkhead threads by {@link ApiBulkheads}.
+ */
+public class PrimaryReadWindow {
+
+    public static final String REQUEST_ATTRIBUTE = PrimaryReadWindow.class.getName();
+    public static final String COOKIE = "primary-until";
+
+    private static final ThreadLocal<PrimaryReadWindow> CURRENT = new ThreadLocal<>();
+
+    private final HttpServletResponse response;
+    private final String path;
+    private volatile long until;
+
+    PrimaryReadWindow(HttpServletRequest request, HttpServletResponse response, long maxUntil) {
+        this.response = response;
+        this.path = request.getContextPath().isEmpty() ? "/" : request.getContextPath();
+        this.until = Math.min(cookieValue(request), maxUntil);
+    }
+
+    public boolean isOpen(long now) {
+        return until > now;
+    }
+
+    public synchronized void extend(long windowMillis) {
+        long now = System.currentTimeMillis();
+        until = Math.max(until, now + windowMillis);
+        if (response.isCommitted()) {
+            return;
+        }
+        Cookie cookie = new Cookie(COOKIE, Long.toString(until));
+        cookie.setPath(path);
+        cookie.setHttpOnly(true);
+        cookie.setMaxAge((int) Math.max(1, (until - now + 999) / 1000));
+        response.addCookie(cookie);
+    }
+
+    public static PrimaryReadWindow current() {
+        return CURRENT.get();
+    }
+
+    static void bind(PrimaryReadWindow window) {
+        if (window == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(window);
+        }
+    }
+
+    public static <T> Callable<T> binding(Callable<T> task, PrimaryReadWindow window) {
+        return () -> {
+            PrimaryReadWindow previous = CURRENT.get();
+            bind(window);
+            try {
+                return task.call();
+            } finally {
+                bind(previous);
+            }
+        };
+    }
+
+    private static long cookieValue(HttpServletRequest request) {
+        Cookie[] cookies = request.getCookies();
+        if (cookies == null) {
+            return 0;
+        }
+        for (Cookie cookie : cookies) {
+            if (COOKIE.equals(cookie.getName())) {
+                try {
+                    return Long.parseLong(cookie.getValue());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+}
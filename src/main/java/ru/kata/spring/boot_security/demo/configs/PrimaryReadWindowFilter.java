@@ -0,0 +1,40 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.time.Duration;
+
+public class PrimaryReadWindowFilter extends OncePerRequestFilter {
+
+    private final long stickyWindowMillis;
+
+    public PrimaryReadWindowFilter(Duration stickyWindow) {
+        this.stickyWindowMillis = stickyWindow.toMillis();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        PrimaryReadWindow window = (PrimaryReadWindow) request.getAttribute(PrimaryReadWindow.REQUEST_ATTRIBUTE);
+        if (window == null) {
+            window = new PrimaryReadWindow(request, response, System.currentTimeMillis() + stickyWindowMillis);
+            request.setAttribute(PrimaryReadWindow.REQUEST_ATTRIBUTE, window);
+        }
+        PrimaryReadWindow.bind(window);
+        try {
+            filterChain.doFilter(request, response);
+        } finally {
+            PrimaryReadWindow.bind(null);
+        }
+    }
+
+    @Override
+    protected boolean shouldNotFilterAsyncDispatch() {
+        return false;
+    }
+}
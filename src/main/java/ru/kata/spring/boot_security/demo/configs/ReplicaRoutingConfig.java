@@ -0,0 +1,109 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.metrics.micrometer.MicrometerMetricsTrackerFactory;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.util.StringUtils;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+@Configuration
+@ConditionalOnProperty(name = "app.datasource.replicas.enabled", havingValue = "true")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReplicaRoutingDataSource replicaRoutingDataSource(
+            HikariDataSource primaryDataSource, DataSourceProperties properties, Environment environment,
+            @Value("${app.datasource.replicas.urls}") List<String> urls,
+            @Value("${app.datasource.replicas.username:}") String username,
+            @Value("${app.datasource.replicas.password:}") String password,
+            @Value("${app.datasource.replicas.health-query:select 1}") String healthQuery,
+            @Value("${app.datasource.replicas.health-timeout:PT1S}") Duration healthTimeout,
+            @Value("${app.datasource.replicas.health-interval:PT5S}") Duration healthInterval,
+            @Value("${app.datasource.replicas.sticky-window:PT5S}") Duration stickyWindow,
+            @Value("${app.datasource.replicas.max-sticky-users:10000}") int maxStickyUsers) {
+        int poolSize = DataSourcePoolConfig.poolSize(environment);
+        List<DataSource> replicas = new ArrayList<>();
+        for (String url : urls) {
+            if (!StringUtils.hasText(url)) {
+                continue;
+            }
+            HikariDataSource replica = properties.initializeDataSourceBuilder()
+                    .type(HikariDataSource.class)
+                    .url(url.trim())
+                    .username(StringUtils.hasText(username) ? username : properties.determineUsername())
+                    .password(StringUtils.hasText(password) ? password : properties.determinePassword())
+                    .build();
+            replica.setPoolName("replica-" + replicas.size());
+            replica.setReadOnly(true);
+            replica.setMaximumPoolSize(poolSize);
+            replica.setMinimumIdle(poolSize);
+            replica.setConnectionTimeout(primaryDataSource.getConnectionTimeout());
+            replica.setInitializationFailTimeout(-1);
+            replicas.add(replica);
+        }
+        return new ReplicaRoutingDataSource(primaryDataSource, replicas, healthQuery,
+                healthTimeout, healthInterval, stickyWindow, maxStickyUsers);
+    }
+
+    @Bean
+    public MeterBinder replicaRoutingMetrics(ReplicaRoutingDataSource routing) {
+        return registry -> {
+            for (DataSource replica : routing.getReplicas()) {
+                if (replica instanceof HikariDataSource) {
+                    ((HikariDataSource) replica).setMetricsTrackerFactory(new MicrometerMetricsTrackerFactory(registry));
+                }
+            }
+            Gauge.builder("datasource.replicas.healthy", routing, ReplicaRoutingDataSource::getHealthyReplicaCount)
+                    .register(registry);
+            FunctionCounter.builder("datasource.routing.connections", routing,
+                            ReplicaRoutingDataSource::getReplicaConnectionCount)
+                    .tag("target", "replica")
+                    .register(registry);
+            FunctionCounter.builder("datasource.routing.connections", routing,
+                            ReplicaRoutingDataSource::getPrimaryConnectionCount)
+                    .tag("target", "primary")
+                    .register(registry);
+            FunctionCounter.builder("datasource.routing.fallbacks", routing,
+                            ReplicaRoutingDataSource::getFallbackCount)
+                    .register(registry);
+        };
+    }
+
+    @Bean
+    public FilterRegistrationBean<PrimaryReadWindowFilter> primaryReadWindowFilter(
+            @Value("${app.datasource.replicas.sticky-window:PT5S}") Duration stickyWindow) {
+        FilterRegistrationBean<PrimaryReadWindowFilter> registration =
+                new FilterRegistrationBean<>(new PrimaryReadWindowFilter(stickyWindow));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE + 2);
+        return registration;
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(ReplicaRoutingDataSource replicaRoutingDataSource) {
+        return new LazyConnectionDataSourceProxy(replicaRoutingDataSource);
+    }
+}
@@ -0,0 +1,226 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.io.Closeable;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Sends connections for read-only transactions to a healthy replica,
+ * round-robin, and everything else to the primary. A replica that fails
+ * its health query or a connection attempt is skipped until the next
+ * successful check. After a read-write transaction commits, reads in the
+ * client's {@link PrimaryReadWindow} stay on the primary for the sticky
+ * window on every node; clients that drop the cookie keep stickiness per
+ * authenticated user on this node only. Must sit behind a
+ * {@code LazyConnectionDataSourceProxy} so the read-only flag is known
+ * when the connection is fetched.
+ */
+public class ReplicaRoutingDataSource extends AbstractDataSource implements DisposableBean {
+
+    private final DataSource primary;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final String healthQuery;
+    private final int healthTimeoutSeconds;
+    private final long stickyWindowMillis;
+    private final int maxStickyUsers;
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+    private final AtomicInteger next = new AtomicInteger();
+    private final LongAdder replicaConnections = new LongAdder();
+    private final LongAdder primaryConnections = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+    private final ScheduledExecutorService healthChecker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "replica-health");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ReplicaRoutingDataSource(DataSource primary, List<DataSource> replicas, String healthQuery,
+                                    Duration healthTimeout, Duration healthInterval, Duration stickyWindow,
+                                    int maxStickyUsers) {
+        this.primary = primary;
+        replicas.forEach(replica -> this.replicas.add(new Replica(replica)));
+        this.healthQuery = healthQuery;
+        this.healthTimeoutSeconds = (int) Math.max(1, healthTimeout.getSeconds());
+        this.stickyWindowMillis = stickyWindow.toMillis();
+        this.maxStickyUsers = maxStickyUsers;
+        checkHealth();
+        long interval = healthInterval.toMillis();
+        healthChecker.scheduleWithFixedDelay(this::checkHealth, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (!isSticky()) {
+                for (Replica replica = nextHealthy(); replica != null; replica = nextHealthy()) {
+                    try {
+                        Connection connection = replica.dataSource.getConnection();
+                        replicaConnections.increment();
+                        return connection;
+                    } catch (SQLException e) {
+                        replica.healthy = false;
+                        fallbacks.increment();
+                    }
+                }
+            }
+        } else if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            stickAfterCommit();
+        }
+        primaryConnections.increment();
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        primaryConnections.increment();
+        return primary.getConnection(username, password);
+    }
+
+    public void checkHealth() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement()) {
+                statement.setQueryTimeout(healthTimeoutSeconds);
+                statement.execute(healthQuery);
+                replica.healthy = true;
+            } catch (SQLException | RuntimeException e) {
+                replica.healthy = false;
+            }
+        }
+    }
+
+    public List<DataSource> getReplicas() {
+        List<DataSource> dataSources = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            dataSources.add(replica.dataSource);
+        }
+        return dataSources;
+    }
+
+    public int getHealthyReplicaCount() {
+        int healthy = 0;
+        for (Replica replica : replicas) {
+            if (replica.healthy) {
+                healthy++;
+            }
+        }
+        return healthy;
+    }
+
+    public long getReplicaConnectionCount() {
+        return replicaConnections.sum();
+    }
+
+    public long getPrimaryConnectionCount() {
+        return primaryConnections.sum();
+    }
+
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+
+    private Replica nextHealthy() {
+        int size = replicas.size();
+        for (int i = 0; i < size; i++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), size));
+            if (replica.healthy) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    private boolean isSticky() {
+        PrimaryReadWindow window = PrimaryReadWindow.current();
+        if (window != null && window.isOpen(System.currentTimeMillis())) {
+            return true;
+        }
+        String user = currentUser();
+        if (user == null) {
+            return false;
+        }
+        Long until = stickyUntil.get(user);
+        if (until == null) {
+            return false;
+        }
+        if (until > System.currentTimeMillis()) {
+            return true;
+        }
+        stickyUntil.remove(user, until);
+        return false;
+    }
+
+    private void stickAfterCommit() {
+        PrimaryReadWindow window = PrimaryReadWindow.current();
+        String user = currentUser();
+        if (window == null && user == null || stickyWindowMillis <= 0) {
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                if (window != null) {
+                    window.extend(stickyWindowMillis);
+                }
+                if (user == null) {
+                    return;
+                }
+                if (stickyUntil.size() >= maxStickyUsers) {
+                    long now = System.currentTimeMillis();
+                    stickyUntil.values().removeIf(until -> until <= now);
+                }
+                stickyUntil.put(user, System.currentTimeMillis() + stickyWindowMillis);
+            }
+        });
+    }
+
+    private static String currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken
+                || !authentication.isAuthenticated()) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    @Override
+    public void destroy() throws IOException {
+        healthChecker.shutdownNow();
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof Closeable) {
+                ((Closeable) replica.dataSource).close();
+            }
+        }
+    }
+
+    private static final class Replica {
+
+        private final DataSource dataSource;
+        private volatile boolean healthy;
+
+        Replica(DataSource dataSource) {
+            this.dataSource = dataSource;
+        }
+    }
+}
@@ -1,33 +1,83 @@
 package ru.kata.spring.boot_security.demo.configs;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
+import org.springframework.core.annotation.Order;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
 import org.springframework.security.config.annotation.web.configuration.WebSecurityCustomizer;
+import org.springframework.security.config.http.SessionCreationPolicy;
 import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
-import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.security.crypto.password.DelegatingPasswordEncoder;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
+import org.springframework.security.web.authentication.UsernamePasswordAuthenticationFilter;
 import org.springframework.security.web.util.matcher.AntPathRequestMatcher;
 
+import java.time.Duration;
+import java.util.Map;
+
 @EnableWebSecurity
 public class SecurityConfig {
 
+    private static final String LOGIN_PROCESSING_URL = "/login";
+    static final String USERNAME_PARAMETER = "username";
+
     private final UserDetailsServiceImpl userDetailsService;
     private final SuccessUserHandler successUserHandler;
+    private final LoginFailureHandler loginFailureHandler;
 
     public SecurityConfig(@Qualifier("userDetailsServiceImpl")UserDetailsServiceImpl userDetailsService,
-                          SuccessUserHandler successUserHandler) {
+                          SuccessUserHandler successUserHandler,
+                          LoginFailureHandler loginFailureHandler) {
         this.userDetailsService = userDetailsService;
         this.successUserHandler = successUserHandler;
+        this.loginFailureHandler = loginFailureHandler;
+    }
+
+    @Bean
+    @Order(1)
+    @ConditionalOnProperty(name = "app.security.api-auth", havingValue = "token")
+    public SecurityFilterChain apiTokenChain(HttpSecurity http, TokenService tokenService) throws Exception {
+        JwtGrantedAuthoritiesConverter authorities = new JwtGrantedAuthoritiesConverter();
+        authorities.setAuthoritiesClaimName(TokenService.ROLES_CLAIM);
+        authorities.setAuthorityPrefix("");
+        JwtAuthenticationConverter converter = new JwtAuthenticationConverter();
+        converter.setJwtGrantedAuthoritiesConverter(authorities);
+        http.antMatcher("/api/**")
+                .authorizeRequests()
+                .antMatchers("/api/auth/**").permitAll()
+                .anyRequest().authenticated()
+                .and()
+                .sessionManagement().sessionCreationPolicy(SessionCreationPolicy.STATELESS)
+                .and()
+                .oauth2ResourceServer()
+                .bearerTokenResolver(new ApiTokenResolver())
+                .jwt()
+                .decoder(tokenService.getAccessDecoder())
+                .jwtAuthenticationConverter(converter);
+        http.csrf().disable();
+        return http.build();
     }
 
     @Bean
-    public SecurityFilterChain configure(HttpSecurity http) throws Exception {
+    public SecurityFilterChain configure(HttpSecurity http,
+                                         ObjectProvider<LoginThrottleFilter> loginThrottleFilter) throws Exception {
+        loginThrottleFilter.ifAvailable(filter ->
+                http.addFilterBefore(filter, UsernamePasswordAuthenticationFilter.class));
         http.formLogin()
                 .successHandler(successUserHandler)
-                .loginProcessingUrl("/login")
-                .usernameParameter("username")
+                .failureHandler(loginFailureHandler)
+                .loginProcessingUrl(LOGIN_PROCESSING_URL)
+                .usernameParameter(USERNAME_PARAMETER)
                 .passwordParameter("password")
                 .permitAll();
         http
@@ -46,8 +96,47 @@ public class SecurityConfig {
     }
 
     @Bean
-    public PasswordEncoder passwordEncoder() {
-        return new BCryptPasswordEncoder(12);
+    public BoundedPasswordEncoder passwordEncoder(PasswordHashingExecutor passwordHashingExecutor,
+                                                  MeterRegistry meterRegistry,
+                                                  @Value("${app.hashing.bcrypt-strength:12}") int strength) {
+        BCryptPasswordEncoder bcrypt = new BCryptPasswordEncoder(strength);
+        DelegatingPasswordEncoder delegating = new DelegatingPasswordEncoder("bcrypt", Map.of("bcrypt", bcrypt));
+        delegating.setDefaultPasswordEncoderForMatches(bcrypt);
+        return new BoundedPasswordEncoder(delegating, passwordHashingExecutor, meterRegistry);
+    }
+
+    @Bean
+    public AuthenticationManager authenticationManager(AuthenticationConfiguration configuration) throws Exception {
+        return configuration.getAuthenticationManager();
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.login-throttle.enabled", havingValue = "true", matchIfMissing = true)
+    public LoginThrottle loginThrottle(
+            MeterRegistry meterRegistry,
+            @Value("${app.login-throttle.ip.capacity:30}") int ipCapacity,
+            @Value("${app.login-throttle.ip.refill-interval:PT2S}") Duration ipRefillInterval,
+            @Value("${app.login-throttle.username.capacity:20}") int usernameCapacity,
+            @Value("${app.login-throttle.username.refill-interval:PT30S}") Duration usernameRefillInterval,
+            @Value("${app.login-throttle.max-entries:100000}") int maxEntries,
+            @Value("${app.login-throttle.stripes:64}") int stripes) {
+        return new LoginThrottle(new LoginRateLimiter(ipCapacity, ipRefillInterval, maxEntries, stripes),
+                new LoginRateLimiter(usernameCapacity, usernameRefillInterval, maxEntries, stripes),
+                meterRegistry);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.login-throttle.enabled", havingValue = "true", matchIfMissing = true)
+    public LoginThrottleFilter loginThrottleFilter(LoginThrottle loginThrottle) {
+        return new LoginThrottleFilter(LOGIN_PROCESSING_URL, USERNAME_PARAMETER, loginThrottle);
+    }
+
+    @Bean
+    @ConditionalOnProperty(name = "app.login-throttle.enabled", havingValue = "true", matchIfMissing = true)
+    public FilterRegistrationBean<LoginThrottleFilter> loginThrottleFilterRegistration(LoginThrottleFilter filter) {
+        FilterRegistrationBean<LoginThrottleFilter> registration = new FilterRegistrationBean<>(filter);
+        registration.setEnabled(false);
+        return registration;
     }
 
     @Bean
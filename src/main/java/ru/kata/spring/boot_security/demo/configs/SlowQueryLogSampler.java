@@ -0,0 +1,55 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Marker;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Counts every statement Hibernate reports as slower than the threshold and
+ * lets only a random {@code sampleRate} fraction of them reach the log, so a
+ * database stall cannot flood it.
+ */
+public class SlowQueryLogSampler extends TurboFilter {
+
+    public static final String LOGGER_NAME = "org.hibernate.SQL_SLOW";
+
+    private final double sampleRate;
+    private final Counter logged;
+    private final Counter dropped;
+
+    public SlowQueryLogSampler(double sampleRate, MeterRegistry meterRegistry) {
+        this.sampleRate = Math.max(0, Math.min(1, sampleRate));
+        this.logged = Counter.builder("hibernate.statements.slow").tag("result", "logged").register(meterRegistry);
+        this.dropped = Counter.builder("hibernate.statements.slow").tag("result", "sampled-out")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params,
+                              Throwable t) {
+        if (format == null || !LOGGER_NAME.equals(logger.getName())) {
+            return FilterReply.NEUTRAL;
+        }
+        if (sampleRate < 1 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            dropped.increment();
+            return FilterReply.DENY;
+        }
+        logged.increment();
+        return FilterReply.NEUTRAL;
+    }
+
+    @Override
+    public void stop() {
+        if (getContext() instanceof LoggerContext) {
+            ((LoggerContext) getContext()).getTurboFilterList().remove(this);
+        }
+        super.stop();
+    }
+}
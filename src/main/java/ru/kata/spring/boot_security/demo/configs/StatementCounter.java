@@ -0,0 +1,38 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class StatementCounter implements StatementInspector {
+
+    public static final String REQUEST_ATTRIBUTE = StatementCounter.class.getName() + ".total";
+
+    private static final ThreadLocal<int[]> COUNT = ThreadLocal.withInitial(() -> new int[1]);
+
+    @Override
+    public String inspect(String sql) {
+        COUNT.get()[0]++;
+        return sql;
+    }
+
+    public static void reset() {
+        COUNT.get()[0] = 0;
+    }
+
+    public static int get() {
+        return COUNT.get()[0];
+    }
+
+    public static <T> Callable<T> counting(Callable<T> task, AtomicInteger total) {
+        return () -> {
+            reset();
+            try {
+                return task.call();
+            } finally {
+                total.addAndGet(get());
+            }
+        };
+    }
+}
@@ -0,0 +1,169 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import com.nimbusds.jose.jwk.source.ImmutableSecret;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2Error;
+import org.springframework.security.oauth2.core.OAuth2TokenValidator;
+import org.springframework.security.oauth2.core.OAuth2TokenValidatorResult;
+import org.springframework.security.oauth2.jose.jws.MacAlgorithm;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtClaimsSet;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtEncoder;
+import org.springframework.security.oauth2.jwt.JwtEncoderParameters;
+import org.springframework.security.oauth2.jwt.JwsHeader;
+import org.springframework.security.oauth2.jwt.JwtValidators;
+import org.springframework.security.oauth2.jwt.NimbusJwtDecoder;
+import org.springframework.security.oauth2.jwt.NimbusJwtEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.kata.spring.boot_security.demo.dao.RefreshTokenDAO;
+import ru.kata.spring.boot_security.demo.dto.TokenResponse;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+import ru.kata.spring.boot_security.demo.model.RefreshToken;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+@Component
+@ConditionalOnProperty(name = "app.security.api-auth", havingValue = "token")
+public class TokenService {
+
+    public static final String ROLES_CLAIM = "roles";
+    private static final String TYPE_CLAIM = "typ";
+    private static final String ACCESS = "access";
+    private static final String REFRESH = "refresh";
+
+    private final UserDetailsService userDetailsService;
+    private final RefreshTokenDAO refreshTokenDAO;
+    private final JwtEncoder encoder;
+    private final JwtDecoder accessDecoder;
+    private final JwtDecoder refreshDecoder;
+    private final String issuer;
+    private final Duration accessTtl;
+    private final Duration refreshTtl;
+
+    public TokenService(UserDetailsServiceImpl userDetailsService, RefreshTokenDAO refreshTokenDAO,
+                        @Value("${app.security.token.secret:}") String secret,
+                        @Value("${app.security.token.issuer:users-demo}") String issuer,
+                        @Value("${app.security.token.access-ttl:PT15M}") Duration accessTtl,
+                        @Value("${app.security.token.refresh-ttl:P7D}") Duration refreshTtl) {
+        this.userDetailsService = userDetailsService;
+        this.refreshTokenDAO = refreshTokenDAO;
+        this.issuer = issuer;
+        this.accessTtl = accessTtl;
+        this.refreshTtl = refreshTtl;
+        SecretKey key = new SecretKeySpec(secretBytes(secret), "HmacSHA256");
+        this.encoder = new NimbusJwtEncoder(new ImmutableSecret<>(key));
+        this.accessDecoder = decoder(key, ACCESS);
+        this.refreshDecoder = decoder(key, REFRESH);
+    }
+
+    public JwtDecoder getAccessDecoder() {
+        return accessDecoder;
+    }
+
+    public TokenResponse issue(UserDetails user) {
+        Instant now = Instant.now();
+        List<String> roles = user.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList());
+        JwtClaimsSet access = JwtClaimsSet.builder()
+                .issuer(issuer)
+                .subject(user.getUsername())
+                .issuedAt(now)
+                .expiresAt(now.plus(accessTtl))
+                .claim(TYPE_CLAIM, ACCESS)
+                .claim(ROLES_CLAIM, roles)
+                .build();
+        RefreshToken stored = new RefreshToken(UUID.randomUUID().toString(), user.getUsername(),
+                now.plus(refreshTtl));
+        refreshTokenDAO.deleteExpired(user.getUsername(), now);
+        refreshTokenDAO.save(stored);
+        JwtClaimsSet refresh = JwtClaimsSet.builder()
+                .issuer(issuer)
+                .subject(user.getUsername())
+                .id(stored.getJti())
+                .issuedAt(now)
+                .expiresAt(stored.getExpiresAt())
+                .claim(TYPE_CLAIM, REFRESH)
+                .build();
+        return new TokenResponse(encode(access), encode(refresh), accessTtl.getSeconds());
+    }
+
+    /**
+     * Exchanges a refresh token for a new pair. Each refresh token can be used
+     * once; presenting one that was already used revokes every outstanding
+     * refresh token of that user, since either the client or a thief holds a
+     * stolen copy.
+     */
+    public TokenResponse refresh(String refreshToken) {
+        Jwt jwt = refreshDecoder.decode(refreshToken);
+        if (jwt.getId() == null || refreshTokenDAO.markUsed(jwt.getId(), jwt.getSubject(), Instant.now()) == 0) {
+            refreshTokenDAO.deleteByUsername(jwt.getSubject());
+            throw new IllegalArgumentException("Refresh token was already used or revoked");
+        }
+        UserDetails user = userDetailsService.loadUserByUsername(jwt.getSubject());
+        if (!user.isEnabled() || !user.isAccountNonLocked()) {
+            throw new IllegalArgumentException("User is disabled");
+        }
+        return issue(user);
+    }
+
+    /**
+     * Revokes the refresh tokens of a deleted user, of a user whose password
+     * was changed, and those issued under a username the user no longer has.
+     * Runs before commit so the revocation commits with the change itself.
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT, fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getUsername() == null) {
+            return;
+        }
+        if (event.getType() == UserChangedEvent.Type.DELETED || event.isPasswordChanged()) {
+            refreshTokenDAO.deleteByUsername(event.getUsername());
+        }
+        String previousUsername = event.getPreviousUsername();
+        if (previousUsername != null && !previousUsername.equals(event.getUsername())) {
+            refreshTokenDAO.deleteByUsername(previousUsername);
+        }
+    }
+
+    private String encode(JwtClaimsSet claims) {
+        JwsHeader header = JwsHeader.with(MacAlgorithm.HS256).build();
+        return encoder.encode(JwtEncoderParameters.from(header, claims)).getTokenValue();
+    }
+
+    private JwtDecoder decoder(SecretKey key, String type) {
+        NimbusJwtDecoder decoder = NimbusJwtDecoder.withSecretKey(key).macAlgorithm(MacAlgorithm.HS256).build();
+        OAuth2TokenValidator<Jwt> typeValidator = jwt -> type.equals(jwt.getClaimAsString(TYPE_CLAIM))
+                ? OAuth2TokenValidatorResult.success()
+                : OAuth2TokenValidatorResult.failure(new OAuth2Error("invalid_token", "Wrong token type", null));
+        decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(
+                JwtValidators.createDefaultWithIssuer(issuer), typeValidator));
+        return decoder;
+    }
+
+    private static byte[] secretBytes(String secret) {
+        if (secret == null || secret.isBlank()) {
+            throw new IllegalArgumentException("app.security.token.secret must be set when app.security.api-auth=token");
+        }
+        byte[] bytes = Base64.getDecoder().decode(secret.trim());
+        if (bytes.length < 32) {
+            throw new IllegalArgumentException("app.security.token.secret must be at least 256 bits");
+        }
+        return bytes;
+    }
+}
@@ -1,28 +1,72 @@
 package ru.kata.spring.boot_security.demo.configs;
 
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsPasswordService;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+import ru.kata.spring.boot_security.demo.model.User;
 
 @Service
-public class UserDetailsServiceImpl implements UserDetailsService {
+public class UserDetailsServiceImpl implements UserDetailsService, UserDetailsPasswordService {
 
     UserDAO userDAO;
+    BoundedUserCache userCache;
+    ApplicationEventPublisher eventPublisher;
+    TransactionTemplate primaryTransaction;
 
-    public UserDetailsServiceImpl(UserDAO userDAO) {
+    public UserDetailsServiceImpl(UserDAO userDAO, BoundedUserCache userCache,
+                                  ApplicationEventPublisher eventPublisher,
+                                  PlatformTransactionManager transactionManager) {
         this.userDAO = userDAO;
+        this.userCache = userCache;
+        this.eventPublisher = eventPublisher;
+        this.primaryTransaction = new TransactionTemplate(transactionManager);
+        this.primaryTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
     }
 
     @Override
-    @Transactional
+    @Transactional(readOnly = true)
     public UserDetails loadUserByUsername(String s) throws UsernameNotFoundException {
-        try {
-            return userDAO.findByUsername(s);
-        } catch (UsernameNotFoundException u) {
+        UserDetails cached = userCache.getUserFromCache(s);
+        if (cached != null) {
+            return cached;
+        }
+        long stamp = userCache.stamp();
+        User user = userDAO.findByUsername(s);
+        if (user == null) {
+            // a replica may not have the row yet, so a just-created user can still log in
+            user = primaryTransaction.execute(status -> userDAO.findByUsername(s));
+        }
+        if (user == null) {
             throw new UsernameNotFoundException("user not found");
         }
+        CachedUserDetails details = CachedUserDetails.of(user);
+        userCache.putUserInCache(details, stamp);
+        return details;
+    }
+
+    /**
+     * Upgrades the stored hash on login through a dirty-checked entity update,
+     * which evicts only this user's second-level cache entry; a bulk HQL
+     * update would drop the whole user and user.roles regions.
+     */
+    @Override
+    @Transactional
+    public UserDetails updatePassword(UserDetails user, String newPassword) {
+        User entity = userDAO.findByUsername(user.getUsername());
+        if (entity == null) {
+            return user;
+        }
+        entity.setPassword(newPassword);
+        eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.UPDATED, entity));
+        return CachedUserDetails.of(entity);
     }
 }
@@ -0,0 +1,32 @@
+package ru.kata.spring.boot_security.demo.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ru.kata.spring.boot_security.demo.dto.AuditPage;
+import ru.kata.spring.boot_security.demo.service.AuditLog;
+
+@RestController
+@RequestMapping("/api/audit")
+public class AuditController {
+
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    private final AuditLog auditLog;
+
+    public AuditController(AuditLog auditLog) {
+        this.auditLog = auditLog;
+    }
+
+    @GetMapping
+    public ResponseEntity<AuditPage> getEntries(
+            @RequestParam(value = "after", defaultValue = "0") long after,
+            @RequestParam(value = "limit", defaultValue = "100") int limit,
+            @RequestParam(value = "userId", required = false) Long userId) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        return new ResponseEntity<>(auditLog.query(after, pageSize, userId), HttpStatus.OK);
+    }
+}
@@ -0,0 +1,26 @@
+package ru.kata.spring.boot_security.demo.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+import ru.kata.spring.boot_security.demo.configs.BoundedUserCache;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/metrics")
+public class MetricsController {
+
+    private final BoundedUserCache userCache;
+
+    public MetricsController(BoundedUserCache userCache) {
+        this.userCache = userCache;
+    }
+
+    @GetMapping("/user-cache")
+    public ResponseEntity<Map<String, Long>> getUserCacheStats() {
+        return new ResponseEntity<>(userCache.stats(), HttpStatus.OK);
+    }
+}
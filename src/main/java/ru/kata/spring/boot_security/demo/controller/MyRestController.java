@@ -1,63 +1,232 @@
 package ru.kata.spring.boot_security.demo.controller;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import ru.kata.spring.boot_security.demo.Exception.ExceptionInfo;
+import ru.kata.spring.boot_security.demo.configs.ApiBulkheads;
+import ru.kata.spring.boot_security.demo.dto.BulkRowResult;
+import ru.kata.spring.boot_security.demo.dto.UserDetailView;
+import ru.kata.spring.boot_security.demo.dto.UserFilter;
+import ru.kata.spring.boot_security.demo.dto.UserPage;
+import ru.kata.spring.boot_security.demo.dto.UserSearchHit;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
+import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.BulkUserService;
 import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserChangeTracker;
+import ru.kata.spring.boot_security.demo.service.UserEventBroadcaster;
+import ru.kata.spring.boot_security.demo.service.UserExportService;
+import ru.kata.spring.boot_security.demo.service.UserSearchService;
 import ru.kata.spring.boot_security.demo.service.UserService;
 
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.InputStream;
 import java.security.Principal;
+import java.time.Duration;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 @RestController
 @RequestMapping("/api")
 public class MyRestController {
 
+    private static final int MAX_PAGE_SIZE = 500;
+    private static final int MAX_SEARCH_RESULTS = 100;
+
     private final UserService userService;
     private final RoleService roleService;
+    private final BulkUserService bulkUserService;
+    private final UserExportService userExportService;
+    private final UserChangeTracker changeTracker;
+    private final UserEventBroadcaster eventBroadcaster;
+    private final ApiBulkheads bulkheads;
+    private final UserSearchService userSearchService;
+    private final Duration bulkTimeout;
 
-
-    public MyRestController(RoleService roleService, UserService userService) {
+    public MyRestController(RoleService roleService, UserService userService, BulkUserService bulkUserService,
+                            UserExportService userExportService, UserChangeTracker changeTracker,
+                            UserEventBroadcaster eventBroadcaster, ApiBulkheads bulkheads,
+                            UserSearchService userSearchService,
+                            @Value("${app.api.bulk.timeout:PT30M}") Duration bulkTimeout) {
         this.userService = userService;
         this.roleService = roleService;
+        this.bulkUserService = bulkUserService;
+        this.userExportService = userExportService;
+        this.changeTracker = changeTracker;
+        this.eventBroadcaster = eventBroadcaster;
+        this.bulkheads = bulkheads;
+        this.userSearchService = userSearchService;
+        this.bulkTimeout = bulkTimeout;
     }
 
     @GetMapping("/users")
-    public ResponseEntity<List<User>> getUsers() {
-        return new ResponseEntity<>(userService.findAll(), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<UserPage<UserSummary>>> getUsers(
+            @RequestParam(value = "limit", defaultValue = "50") int limit,
+            @RequestParam(value = "after", required = false) String after,
+            @RequestParam(value = "username", required = false) String username,
+            @RequestParam(value = "email", required = false) String email,
+            @RequestParam(value = "role", required = false) String role,
+            WebRequest request) {
+        int pageSize = Math.max(1, Math.min(limit, MAX_PAGE_SIZE));
+        String etag = changeTracker.listEtag(pageSize, after, username, email, role);
+        if (etag != null && request.checkNotModified(etag)) {
+            return null;
+        }
+        long cursor = UserPage.decodeCursor(after);
+        UserFilter filter = new UserFilter(username, email, role);
+        return bulkheads.read(() -> {
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok().cacheControl(CacheControl.noCache());
+            if (etag != null) {
+                response.eTag(etag);
+            }
+            return response.body(userService.findPage(cursor, pageSize, filter));
+        });
+    }
+
+    @GetMapping("/users/search")
+    public ResponseEntity<List<UserSearchHit>> searchUsers(
+            @RequestParam("q") String query,
+            @RequestParam(value = "limit", defaultValue = "20") int limit) {
+        int maxResults = Math.max(1, Math.min(limit, MAX_SEARCH_RESULTS));
+        return new ResponseEntity<>(userSearchService.search(query, maxResults), HttpStatus.OK);
+    }
+
+    @GetMapping("/users/export")
+    public DeferredResult<Void> exportUsers(@RequestParam(value = "format", defaultValue = "ndjson") String format,
+                                            HttpServletResponse response) {
+        if ("csv".equalsIgnoreCase(format)) {
+            return stream(response, "text/csv", "users.csv", userExportService::exportCsv);
+        }
+        return stream(response, "application/x-ndjson", "users.ndjson", userExportService::exportNdjson);
+    }
+
+    @GetMapping(value = "/users/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter userEvents(@RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        return eventBroadcaster.subscribe(lastEventId);
     }
 
     @PostMapping("/users")
-    public ResponseEntity<ExceptionInfo> createUser(@Valid @RequestBody User user, BindingResult bindingResult) {
-        return userService.create(user, bindingResult);
+    public CompletableFuture<ResponseEntity<ExceptionInfo>> createUser(@Valid @RequestBody User user,
+                                                                     BindingResult bindingResult) {
+        return bulkheads.write(() -> userService.create(user, bindingResult));
     }
 
     @DeleteMapping("/users/{id}")
-    public ResponseEntity<ExceptionInfo> pageDelete(@PathVariable("id") long id) {
-        userService.deleteById(id);
-        return new ResponseEntity<>(new ExceptionInfo("User deleted"), HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<ExceptionInfo>> pageDelete(@PathVariable("id") long id) {
+        return bulkheads.write(() -> userService.deleteById(id)
+                ? new ResponseEntity<>(new ExceptionInfo("User deleted"), HttpStatus.OK)
+                : new ResponseEntity<>(new ExceptionInfo("User not found"), HttpStatus.NOT_FOUND));
     }
 
     @GetMapping("users/{id}")
-    public ResponseEntity<User> getUser(@PathVariable("id") long id) {
-        User user = userService.getById(id);
-        return new ResponseEntity<>(user, HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<UserDetailView>> getUser(@PathVariable("id") long id,
+                                                                     WebRequest request) {
+        String known = changeTracker.etagById(id);
+        if (known != null && request.checkNotModified(known)) {
+            return null;
+        }
+        long stamp = changeTracker.stamp();
+        return bulkheads.read(() -> detailResponse(userService.getDetailById(id), stamp));
     }
 
     @GetMapping("/user")
-    public ResponseEntity<User> getUserByUsername(Principal principal) {
-        User user = userService.findByUsername(principal.getName());
-        return new ResponseEntity<>(user, HttpStatus.OK);
+    public CompletableFuture<ResponseEntity<UserDetailView>> getUserByUsername(Principal principal,
+                                                                               WebRequest request) {
+        String username = principal.getName();
+        String known = changeTracker.etagByUsername(username);
+        if (known != null && request.checkNotModified(known)) {
+            return null;
+        }
+        long stamp = changeTracker.stamp();
+        return bulkheads.read(() -> detailResponse(userService.getDetailByUsername(username), stamp));
+    }
+
+    @GetMapping("/roles")
+    public CompletableFuture<ResponseEntity<List<Role>>> getRoles() {
+        return bulkheads.read(() -> new ResponseEntity<>(roleService.findAllRole(), HttpStatus.OK));
     }
 
     @PutMapping("/users/{id}")
-    public ResponseEntity<ExceptionInfo> pageEdit(@PathVariable("id") long id,
-                                                  @Valid @RequestBody User user,
-                                                  BindingResult bindingResult) {
-       return userService.edit(id, user, bindingResult);
+    public CompletableFuture<ResponseEntity<ExceptionInfo>> pageEdit(@PathVariable("id") long id,
+                                                                    @Valid @RequestBody User user,
+                                                                    BindingResult bindingResult,
+                                                                    @RequestHeader(value = HttpHeaders.IF_MATCH,
+                                                                            required = false) String ifMatch) {
+        Long expectedVersion = UserChangeTracker.parseVersion(ifMatch, id);
+        return bulkheads.write(() -> userService.edit(id, user, bindingResult, expectedVersion));
+    }
+
+    @PatchMapping(value = "/users/{id}", consumes = {"application/merge-patch+json", MediaType.APPLICATION_JSON_VALUE})
+    public CompletableFuture<ResponseEntity<ExceptionInfo>> pagePatch(@PathVariable("id") long id,
+                                                                     @RequestBody JsonNode patch,
+                                                                     @RequestHeader(value = HttpHeaders.IF_MATCH,
+                                                                             required = false) String ifMatch) {
+        Long expectedVersion = UserChangeTracker.parseVersion(ifMatch, id);
+        return bulkheads.write(() -> userService.patch(id, patch, expectedVersion));
+    }
+
+    @PostMapping(value = "/users:bulk", consumes = "application/x-ndjson")
+    public DeferredResult<Void> importUsersNdjson(InputStream body, HttpServletResponse response) {
+        return stream(response, MediaType.APPLICATION_JSON_VALUE, null,
+                output -> bulkUserService.importNdjson(body, output));
+    }
+
+    @PostMapping(value = "/users:bulk", consumes = "text/csv")
+    public DeferredResult<Void> importUsersCsv(InputStream body, HttpServletResponse response) {
+        return stream(response, MediaType.APPLICATION_JSON_VALUE, null,
+                output -> bulkUserService.importCsv(body, output));
+    }
+
+    @DeleteMapping("/users:bulk")
+    public DeferredResult<ResponseEntity<List<BulkRowResult>>> deleteUsers(@RequestBody List<Long> ids) {
+        return deferred(bulkheads.bulk(() -> new ResponseEntity<>(bulkUserService.deleteAll(ids), HttpStatus.OK)));
+    }
+
+    private DeferredResult<Void> stream(HttpServletResponse response, String contentType, String filename,
+                                        StreamingResponseBody body) {
+        return deferred(bulkheads.bulk(() -> {
+            response.setContentType(contentType);
+            if (filename != null) {
+                response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + filename);
+            }
+            body.writeTo(response.getOutputStream());
+            response.flushBuffer();
+            return null;
+        }));
+    }
+
+    private <T> DeferredResult<T> deferred(CompletableFuture<T> future) {
+        DeferredResult<T> result = new DeferredResult<>(bulkTimeout.toMillis());
+        future.whenComplete((value, error) -> {
+            if (error == null) {
+                result.setResult(value);
+            } else {
+                result.setErrorResult(error instanceof CompletionException ? error.getCause() : error);
+            }
+        });
+        return result;
+    }
+
+    private ResponseEntity<UserDetailView> detailResponse(UserDetailView user, long stamp) {
+        if (user == null) {
+            return new ResponseEntity<>(HttpStatus.NOT_FOUND);
+        }
+        String etag = UserChangeTracker.userEtag(user.getUserId(), user.getVersion());
+        changeTracker.remember(user.getUserId(), user.getUsername(), etag, stamp);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache()).body(user);
     }
-}
\ No newline at end of file
+}
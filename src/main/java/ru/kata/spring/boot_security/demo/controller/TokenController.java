@@ -0,0 +1,84 @@
+package ru.kata.spring.boot_security.demo.controller;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RestController;
+import ru.kata.spring.boot_security.demo.Exception.ExceptionInfo;
+import ru.kata.spring.boot_security.demo.Exception.HashingCapacityExceededException;
+import ru.kata.spring.boot_security.demo.Exception.LoginThrottledException;
+import ru.kata.spring.boot_security.demo.configs.LoginThrottle;
+import ru.kata.spring.boot_security.demo.configs.TokenService;
+import ru.kata.spring.boot_security.demo.configs.UserDetailsServiceImpl;
+import ru.kata.spring.boot_security.demo.dto.TokenRequest;
+
+import javax.servlet.http.HttpServletRequest;
+import java.security.Principal;
+
+@RestController
+@ConditionalOnProperty(name = "app.security.api-auth", havingValue = "token")
+public class TokenController {
+
+    private final TokenService tokenService;
+    private final AuthenticationManager authenticationManager;
+    private final UserDetailsService userDetailsService;
+    private final ObjectProvider<LoginThrottle> loginThrottle;
+
+    public TokenController(TokenService tokenService, AuthenticationManager authenticationManager,
+                           UserDetailsServiceImpl userDetailsService, ObjectProvider<LoginThrottle> loginThrottle) {
+        this.tokenService = tokenService;
+        this.authenticationManager = authenticationManager;
+        this.userDetailsService = userDetailsService;
+        this.loginThrottle = loginThrottle;
+    }
+
+    @PostMapping("/api/auth/token")
+    public ResponseEntity<?> token(@RequestBody TokenRequest request, HttpServletRequest servletRequest) {
+        LoginThrottle throttle = loginThrottle.getIfAvailable();
+        String address = servletRequest.getRemoteAddr();
+        if (throttle != null) {
+            long wait = throttle.tryAcquire(address, request.getUsername());
+            if (wait > 0) {
+                throw new LoginThrottledException("Too many login attempts", LoginThrottle.retryAfterSeconds(wait));
+            }
+        }
+        try {
+            Authentication authentication = authenticationManager.authenticate(
+                    new UsernamePasswordAuthenticationToken(request.getUsername(), request.getPassword()));
+            return new ResponseEntity<>(tokenService.issue((UserDetails) authentication.getPrincipal()),
+                    HttpStatus.OK);
+        } catch (HashingCapacityExceededException e) {
+            throw e;
+        } catch (AuthenticationException e) {
+            if (throttle != null) {
+                throttle.recordFailure(request.getUsername());
+            }
+            return new ResponseEntity<>(new ExceptionInfo("Bad credentials"), HttpStatus.UNAUTHORIZED);
+        }
+    }
+
+    @PostMapping("/api/auth/refresh")
+    public ResponseEntity<?> refresh(@RequestBody TokenRequest request) {
+        try {
+            return new ResponseEntity<>(tokenService.refresh(request.getRefreshToken()), HttpStatus.OK);
+        } catch (JwtException | AuthenticationException | IllegalArgumentException e) {
+            return new ResponseEntity<>(new ExceptionInfo("Invalid refresh token"), HttpStatus.UNAUTHORIZED);
+        }
+    }
+
+    @PostMapping("/auth/token")
+    public ResponseEntity<?> sessionToken(Principal principal) {
+        UserDetails user = userDetailsService.loadUserByUsername(principal.getName());
+        return new ResponseEntity<>(tokenService.issue(user), HttpStatus.OK);
+    }
+}
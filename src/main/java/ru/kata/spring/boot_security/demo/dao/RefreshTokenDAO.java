@@ -0,0 +1,30 @@
+package ru.kata.spring.boot_security.demo.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import ru.kata.spring.boot_security.demo.model.RefreshToken;
+
+import java.time.Instant;
+
+@Repository
+public interface RefreshTokenDAO extends JpaRepository<RefreshToken, String> {
+    @Transactional
+    @Modifying
+    @Query(value = "update RefreshToken t set t.used = true" +
+            " where t.jti = :jti and t.username = :username and t.used = false and t.expiresAt > :now")
+    int markUsed(@Param("jti") String jti, @Param("username") String username, @Param("now") Instant now);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from RefreshToken t where t.username = :username")
+    int deleteByUsername(@Param("username") String username);
+
+    @Transactional
+    @Modifying
+    @Query(value = "delete from RefreshToken t where t.username = :username and t.expiresAt <= :now")
+    int deleteExpired(@Param("username") String username, @Param("now") Instant now);
+}
@@ -4,6 +4,11 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 import ru.kata.spring.boot_security.demo.model.Role;
 
+import java.util.Collection;
+import java.util.List;
+
 @Repository
 public interface RoleDAO extends JpaRepository<Role, Long> {
-}
\ No newline at end of file
+    List<Role> findByRole(String role);
+    List<Role> findByRoleIn(Collection<String> roles);
+}
@@ -0,0 +1,9 @@
+package ru.kata.spring.boot_security.demo.dao;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import ru.kata.spring.boot_security.demo.model.SchemaSeed;
+
+@Repository
+public interface SchemaSeedDAO extends JpaRepository<SchemaSeed, String> {
+}
@@ -1,13 +1,94 @@
 package ru.kata.spring.boot_security.demo.dao;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import ru.kata.spring.boot_security.demo.configs.HibernateCacheConfig;
+import ru.kata.spring.boot_security.demo.dto.UserDetailView;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
 import ru.kata.spring.boot_security.demo.model.User;
 
+import javax.persistence.QueryHint;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.QueryHints.HINT_CACHEABLE;
+import static org.hibernate.jpa.QueryHints.HINT_CACHE_REGION;
+import static org.hibernate.jpa.QueryHints.HINT_FETCH_SIZE;
+import static org.hibernate.jpa.QueryHints.HINT_READONLY;
+
 @Repository
 public interface UserDAO extends JpaRepository<User, Long> {
+    @QueryHints({@QueryHint(name = HINT_CACHEABLE, value = "true"),
+            @QueryHint(name = HINT_CACHE_REGION, value = HibernateCacheConfig.USER_BY_USERNAME_REGION)})
     @Query(value = "select u from User u join fetch u.roles where u.username = :username")
     User findByUsername(@Param("username") String username);
-}
\ No newline at end of file
+
+    @Override
+    @Query(value = "select distinct u from User u left join fetch u.roles")
+    List<User> findAll();
+
+    @Query(value = "select new ru.kata.spring.boot_security.demo.dto.UserSummary(" +
+            "u.userId, u.username, u.name, u.surname, u.age, u.email)" +
+            " from User u where u.userId > :after" +
+            " and (:username is null or u.username like :username escape '\\')" +
+            " and (:email is null or u.email like :email escape '\\')" +
+            " and (:role is null or exists (select r.id from User u2 join u2.roles r" +
+            " where u2 = u and r.role = :role))" +
+            " order by u.userId")
+    List<UserSummary> findSummaryPageAfter(@Param("after") long after,
+                                           @Param("username") String usernamePattern,
+                                           @Param("email") String emailPattern,
+                                           @Param("role") String role,
+                                           Pageable limit);
+
+    @Query(value = "select new ru.kata.spring.boot_security.demo.dto.UserDetailView(" +
+            "u.userId, u.username, u.name, u.surname, u.age, u.email, u.version) from User u where u.userId = :id")
+    UserDetailView findDetailById(@Param("id") long id);
+
+    @Query(value = "select new ru.kata.spring.boot_security.demo.dto.UserDetailView(" +
+            "u.userId, u.username, u.name, u.surname, u.age, u.email, u.version)" +
+            " from User u where u.username = :username")
+    UserDetailView findDetailByUsername(@Param("username") String username);
+
+    @Query(value = "select u.userId, r.role from User u join u.roles r where u.userId in :ids")
+    List<Object[]> findRoleNamesByUserIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "select u.username from User u where u.username in :usernames")
+    List<String> findExistingUsernames(@Param("usernames") Collection<String> usernames);
+
+    @Query(value = "select u.userId from User u where u.username = :username")
+    List<Long> findUserIdsByUsername(@Param("username") String username);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query(value = "select u.username from User u")
+    Stream<String> streamUsernames();
+
+    @Query(value = "select u.userId, u.username from User u where u.userId in :ids")
+    List<Object[]> findUsernamesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "delete from users_roles where user_Id in (:ids)", nativeQuery = true)
+    int deleteRoleLinksByUserIdIn(@Param("ids") Collection<Long> ids);
+
+    @Modifying
+    @Query(value = "delete from User u where u.userId in :ids")
+    int deleteByUserIdIn(@Param("ids") Collection<Long> ids);
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query(value = "select u.userId, u.username, u.name, u.surname, u.age, u.email, r.role" +
+            " from User u left join u.roles r order by u.userId")
+    Stream<Object[]> streamExportRows();
+
+    @QueryHints({@QueryHint(name = HINT_FETCH_SIZE, value = "1000"),
+            @QueryHint(name = HINT_READONLY, value = "true")})
+    @Query(value = "select u.userId, u.username, u.name, u.surname, u.email from User u order by u.userId")
+    Stream<Object[]> streamSearchRows();
+}
@@ -0,0 +1,101 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+
+import java.time.Instant;
+import java.util.Map;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class AuditEntry {
+
+    private final long sequence;
+    private final Instant timestamp;
+    private final String actor;
+    private final UserChangedEvent.Type type;
+    private final Long userId;
+    private final String username;
+    private final Map<String, Object> state;
+    private final Map<String, Change> changes;
+
+    @JsonCreator
+    public AuditEntry(@JsonProperty("sequence") long sequence,
+                      @JsonProperty("timestamp") Instant timestamp,
+                      @JsonProperty("actor") String actor,
+                      @JsonProperty("type") UserChangedEvent.Type type,
+                      @JsonProperty("userId") Long userId,
+                      @JsonProperty("username") String username,
+                      @JsonProperty("state") Map<String, Object> state,
+                      @JsonProperty("changes") Map<String, Change> changes) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.actor = actor;
+        this.type = type;
+        this.userId = userId;
+        this.username = username;
+        this.state = state;
+        this.changes = changes;
+    }
+
+    public AuditEntry withSequence(long sequence) {
+        return new AuditEntry(sequence, timestamp, actor, type, userId, username, state, changes);
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public Instant getTimestamp() {
+        return timestamp;
+    }
+
+    public String getActor() {
+        return actor;
+    }
+
+    public UserChangedEvent.Type getType() {
+        return type;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Map<String, Object> getState() {
+        return state;
+    }
+
+    /**
+     * Fields an update changed, with their values before and after. Null
+     * when the writer did not know the previous state.
+     */
+    public Map<String, Change> getChanges() {
+        return changes;
+    }
+
+    public static class Change {
+
+        private final Object from;
+        private final Object to;
+
+        @JsonCreator
+        public Change(@JsonProperty("from") Object from, @JsonProperty("to") Object to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        public Object getFrom() {
+            return from;
+        }
+
+        public Object getTo() {
+            return to;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import java.util.List;
+
+public class AuditPage {
+
+    private final List<AuditEntry> entries;
+    private final long next;
+
+    public AuditPage(List<AuditEntry> entries, long next) {
+        this.entries = entries;
+        this.next = next;
+    }
+
+    public List<AuditEntry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * The last sequence the read examined, matching or not; pass it as
+     * {@code after} to continue.
+     */
+    public long getNext() {
+        return next;
+    }
+}
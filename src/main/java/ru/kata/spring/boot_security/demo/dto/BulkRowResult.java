@@ -0,0 +1,61 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class BulkRowResult {
+
+    public enum Status {
+        CREATED, DELETED, NOT_FOUND, FAILED
+    }
+
+    private final int row;
+    private final Long userId;
+    private final String username;
+    private final Status status;
+    private final String error;
+
+    private BulkRowResult(int row, Long userId, String username, Status status, String error) {
+        this.row = row;
+        this.userId = userId;
+        this.username = username;
+        this.status = status;
+        this.error = error;
+    }
+
+    public static BulkRowResult created(int row, Long userId, String username) {
+        return new BulkRowResult(row, userId, username, Status.CREATED, null);
+    }
+
+    public static BulkRowResult deleted(int row, Long userId, String username) {
+        return new BulkRowResult(row, userId, username, Status.DELETED, null);
+    }
+
+    public static BulkRowResult notFound(int row, Long userId) {
+        return new BulkRowResult(row, userId, null, Status.NOT_FOUND, null);
+    }
+
+    public static BulkRowResult failed(int row, String username, String error) {
+        return new BulkRowResult(row, null, username, Status.FAILED, error);
+    }
+
+    public int getRow() {
+        return row;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public Status getStatus() {
+        return status;
+    }
+
+    public String getError() {
+        return error;
+    }
+}
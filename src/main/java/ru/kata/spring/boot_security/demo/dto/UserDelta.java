@@ -0,0 +1,42 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class UserDelta {
+
+    private final long sequence;
+    private final UserChangedEvent.Type type;
+    private final Long userId;
+    private final String username;
+    private final UserDetailView user;
+
+    public UserDelta(long sequence, UserChangedEvent.Type type, Long userId, String username, UserDetailView user) {
+        this.sequence = sequence;
+        this.type = type;
+        this.userId = userId;
+        this.username = username;
+        this.user = user;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public UserChangedEvent.Type getType() {
+        return type;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public UserDetailView getUser() {
+        return user;
+    }
+}
@@ -0,0 +1,31 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+public class UserDetailView extends UserSummary {
+
+    private final long version;
+
+    public UserDetailView(Long userId, String username, String name, String surname, byte age, String email,
+                          long version) {
+        super(userId, username, name, surname, age, email);
+        this.version = version;
+    }
+
+    public static UserDetailView of(User user) {
+        if (user == null) {
+            return null;
+        }
+        UserDetailView view = new UserDetailView(user.getUserId(), user.getUsername(), user.getName(),
+                user.getSurname(), user.getAge(), user.getEmail(), user.getVersion());
+        for (Role role : user.getRoles()) {
+            view.getRoles().add(role.getRole());
+        }
+        return view;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
@@ -0,0 +1,48 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+public class UserFilter {
+
+    private final String usernamePrefix;
+    private final String emailDomain;
+    private final String role;
+
+    public UserFilter(String usernamePrefix, String emailDomain, String role) {
+        this.usernamePrefix = blankToNull(usernamePrefix);
+        this.emailDomain = blankToNull(emailDomain);
+        this.role = blankToNull(role);
+    }
+
+    public static UserFilter none() {
+        return new UserFilter(null, null, null);
+    }
+
+    public String getUsernamePrefix() {
+        return usernamePrefix;
+    }
+
+    public String getEmailDomain() {
+        return emailDomain;
+    }
+
+    public String getRole() {
+        return role;
+    }
+
+    public String usernamePattern() {
+        return usernamePrefix == null ? null : escapeLike(usernamePrefix) + "%";
+    }
+
+    public String emailPattern() {
+        return emailDomain == null ? null : "%@" + escapeLike(emailDomain);
+    }
+
+    private static String blankToNull(String value) {
+        return value == null || value.trim().isEmpty() ? null : value.trim();
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_");
+    }
+}
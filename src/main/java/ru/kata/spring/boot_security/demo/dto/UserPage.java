@@ -0,0 +1,43 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import ru.kata.spring.boot_security.demo.Exception.InvalidCursorException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+public class UserPage<T> {
+
+    private final List<T> users;
+    private final String nextCursor;
+
+    public UserPage(List<T> users, String nextCursor) {
+        this.users = users;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<T> getUsers() {
+        return users;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public static String encodeCursor(long userId) {
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(Long.toString(userId).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static long decodeCursor(String cursor) {
+        if (cursor == null || cursor.isEmpty()) {
+            return 0L;
+        }
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.US_ASCII);
+            return Long.parseLong(decoded);
+        } catch (IllegalArgumentException e) {
+            throw new InvalidCursorException("Invalid cursor: " + cursor);
+        }
+    }
+}
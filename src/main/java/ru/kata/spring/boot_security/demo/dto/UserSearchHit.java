@@ -0,0 +1,38 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+public class UserSearchHit {
+
+    private final long userId;
+    private final String username;
+    private final String name;
+    private final String surname;
+    private final String email;
+
+    public UserSearchHit(long userId, String username, String name, String surname, String email) {
+        this.userId = userId;
+        this.username = username;
+        this.name = name;
+        this.surname = surname;
+        this.email = email;
+    }
+
+    public long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSurname() {
+        return surname;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+}
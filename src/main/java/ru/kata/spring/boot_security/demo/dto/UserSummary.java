@@ -0,0 +1,52 @@
+package ru.kata.spring.boot_security.demo.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class UserSummary {
+
+    private final Long userId;
+    private final String username;
+    private final String name;
+    private final String surname;
+    private final byte age;
+    private final String email;
+    private final List<String> roles = new ArrayList<>(2);
+
+    public UserSummary(Long userId, String username, String name, String surname, byte age, String email) {
+        this.userId = userId;
+        this.username = username;
+        this.name = name;
+        this.surname = surname;
+        this.age = age;
+        this.email = email;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getSurname() {
+        return surname;
+    }
+
+    public byte getAge() {
+        return age;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public List<String> getRoles() {
+        return roles;
+    }
+}
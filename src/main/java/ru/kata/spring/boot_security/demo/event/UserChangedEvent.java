@@ -0,0 +1,81 @@
+package ru.kata.spring.boot_security.demo.event;
+
+import ru.kata.spring.boot_security.demo.model.User;
+
+public class UserChangedEvent {
+
+    public enum Type {
+        CREATED, UPDATED, DELETED
+    }
+
+    private final Type type;
+    private final Long userId;
+    private final String username;
+    private final User user;
+    private final String previousUsername;
+    private final boolean passwordChanged;
+
+    public UserChangedEvent(Type type, Long userId, String username) {
+        this(type, userId, username, null, null, false);
+    }
+
+    public UserChangedEvent(Type type, User user) {
+        this(type, user, null);
+    }
+
+    public UserChangedEvent(Type type, User user, String previousUsername) {
+        this(type, user, previousUsername, false);
+    }
+
+    public UserChangedEvent(Type type, User user, String previousUsername, boolean passwordChanged) {
+        this(type, user.getUserId(), user.getUsername(), user, previousUsername, passwordChanged);
+    }
+
+    private UserChangedEvent(Type type, Long userId, String username, User user, String previousUsername,
+                             boolean passwordChanged) {
+        this.type = type;
+        this.userId = userId;
+        this.username = username;
+        this.user = user;
+        this.previousUsername = previousUsername;
+        this.passwordChanged = passwordChanged;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * The written entity for creates and updates published by the services,
+     * otherwise null. After commit it reflects the committed row, including
+     * its incremented version.
+     */
+    public User getUser() {
+        return user;
+    }
+
+    /**
+     * The username before an update, when the publisher knew it, otherwise
+     * null. Differs from {@link #getUsername()} when the update renamed the
+     * user.
+     */
+    public String getPreviousUsername() {
+        return previousUsername;
+    }
+
+    /**
+     * Whether the user's password was replaced by a submitted one. A rehash
+     * of the same password on login does not count.
+     */
+    public boolean isPasswordChanged() {
+        return passwordChanged;
+    }
+}
@@ -0,0 +1,31 @@
+package ru.kata.spring.boot_security.demo.model;
+
+import javax.persistence.*;
+import java.time.Instant;
+
+@Entity
+@Table(name = "schema_seed")
+public class SchemaSeed {
+    @Id
+    @Column(name = "version", length = 32)
+    private String version;
+
+    @Column(name = "seeded_at")
+    private Instant seededAt;
+
+    public SchemaSeed() {
+    }
+
+    public SchemaSeed(String version) {
+        this.version = version;
+        this.seededAt = Instant.now();
+    }
+
+    public String getVersion() {
+        return version;
+    }
+
+    public Instant getSeededAt() {
+        return seededAt;
+    }
+}
@@ -0,0 +1,248 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+import ru.kata.spring.boot_security.demo.dto.AuditEntry;
+import ru.kata.spring.boot_security.demo.dto.AuditPage;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Collectors;
+
+@Component
+public class AuditLog {
+
+    private static final String SYSTEM_ACTOR = "system";
+    private static final long BACKOFF_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final AuditRingBuffer<AuditEntry> buffer;
+    private final AuditSegments segments;
+    private final int batchSize;
+    private final long fsyncIntervalNanos;
+    private final long offerTimeoutNanos;
+    private final long maxScanBytes;
+    private final Counter written;
+    private final Counter blocked;
+    private final Counter dropped;
+    private final Counter failed;
+    private final Thread writer;
+    private final AtomicBoolean parked = new AtomicBoolean();
+    private volatile boolean running = true;
+    private long sequence;
+    private long lastForce = System.nanoTime();
+    private boolean unforced;
+
+    public AuditLog(ObjectMapper objectMapper, MeterRegistry meterRegistry,
+                    @Value("${app.audit.directory:audit}") String directory,
+                    @Value("${app.audit.buffer-capacity:8192}") int bufferCapacity,
+                    @Value("${app.audit.batch-size:256}") int batchSize,
+                    @Value("${app.audit.segment-size:16MB}") DataSize segmentSize,
+                    @Value("${app.audit.max-segments:64}") int maxSegments,
+                    @Value("${app.audit.fsync-interval:PT1S}") Duration fsyncInterval,
+                    @Value("${app.audit.offer-timeout:PT0.1S}") Duration offerTimeout,
+                    @Value("${app.audit.max-scan:4MB}") DataSize maxScan) throws IOException {
+        this.buffer = new AuditRingBuffer<>(bufferCapacity);
+        this.segments = new AuditSegments(Paths.get(directory), segmentSize.toBytes(), maxSegments, objectMapper);
+        this.sequence = segments.open();
+        this.batchSize = Math.max(1, batchSize);
+        this.fsyncIntervalNanos = fsyncInterval.toNanos();
+        this.offerTimeoutNanos = offerTimeout.toNanos();
+        this.maxScanBytes = maxScan.toBytes();
+        this.written = Counter.builder("audit.entries").tag("result", "written").register(meterRegistry);
+        this.dropped = Counter.builder("audit.entries").tag("result", "dropped").register(meterRegistry);
+        this.failed = Counter.builder("audit.entries").tag("result", "failed").register(meterRegistry);
+        this.blocked = Counter.builder("audit.buffer.blocked").register(meterRegistry);
+        Gauge.builder("audit.buffer.size", buffer, AuditRingBuffer::size).register(meterRegistry);
+        this.writer = new Thread(this::drain, "audit-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void record(UserChangedEvent.Type type, User user) {
+        record(type, null, user);
+    }
+
+    /**
+     * Records a change together with the fields that differ from
+     * {@code before}, a {@link #snapshot(User)} taken before the entity was
+     * modified.
+     */
+    public void record(UserChangedEvent.Type type, Map<String, Object> before, User user) {
+        Map<String, Object> after = snapshot(user);
+        record(new AuditEntry(0, Instant.now(), currentActor(), type, user.getUserId(),
+                user.getUsername(), after, before != null ? diff(before, after) : null));
+    }
+
+    /**
+     * Records a change of a user known only by id and username, such as a
+     * bulk delete that never loads the entity. The entry carries no state.
+     */
+    public void record(UserChangedEvent.Type type, Long userId, String username) {
+        record(new AuditEntry(0, Instant.now(), currentActor(), type, userId, username, null, null));
+    }
+
+    private void record(AuditEntry entry) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(entry);
+                }
+            });
+        } else {
+            enqueue(entry);
+        }
+    }
+
+    public AuditPage query(long after, int limit, Long userId) {
+        try {
+            return segments.read(after, limit, userId, maxScanBytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void enqueue(AuditEntry entry) {
+        if (buffer.offer(entry)) {
+            if (parked.get() && parked.compareAndSet(true, false)) {
+                LockSupport.unpark(writer);
+            }
+            return;
+        }
+        blocked.increment();
+        LockSupport.unpark(writer);
+        long deadline = System.nanoTime() + offerTimeoutNanos;
+        while (!buffer.offer(entry)) {
+            if (!running || System.nanoTime() - deadline >= 0) {
+                dropped.increment();
+                return;
+            }
+            LockSupport.parkNanos(BACKOFF_PARK_NANOS);
+        }
+    }
+
+    private void drain() {
+        List<AuditEntry> batch = new ArrayList<>(batchSize);
+        while (running || buffer.size() > 0) {
+            batch.clear();
+            if (buffer.drainTo(batch, batchSize) == 0) {
+                long untilForce = lastForce + fsyncIntervalNanos - System.nanoTime();
+                if (unforced && untilForce <= 0) {
+                    force();
+                } else if (running) {
+                    park(unforced ? untilForce : 0);
+                }
+                continue;
+            }
+            for (int i = 0; i < batch.size(); i++) {
+                batch.set(i, batch.get(i).withSequence(++sequence));
+            }
+            try {
+                segments.append(batch);
+                written.increment(batch.size());
+                unforced = true;
+            } catch (IOException | RuntimeException e) {
+                failed.increment(batch.size());
+            }
+            if (unforced && System.nanoTime() - lastForce >= fsyncIntervalNanos) {
+                force();
+            }
+        }
+        try {
+            segments.close();
+        } catch (IOException e) {
+            failed.increment();
+        }
+    }
+
+    private void park(long nanos) {
+        parked.set(true);
+        if (buffer.size() == 0 && running) {
+            if (nanos > 0) {
+                LockSupport.parkNanos(this, nanos);
+            } else {
+                LockSupport.park(this);
+            }
+        }
+        parked.set(false);
+    }
+
+    private void force() {
+        try {
+            segments.force();
+            unforced = false;
+        } catch (IOException e) {
+            failed.increment();
+        }
+        lastForce = System.nanoTime();
+    }
+
+    private static String currentActor() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            return SYSTEM_ACTOR;
+        }
+        return authentication.getName();
+    }
+
+    public static Map<String, Object> snapshot(User user) {
+        Map<String, Object> state = new LinkedHashMap<>();
+        state.put("username", user.getUsername());
+        state.put("name", user.getName());
+        state.put("surname", user.getSurname());
+        state.put("age", user.getAge());
+        state.put("email", user.getEmail());
+        if (user.getRoles() != null) {
+            state.put("roles", user.getRoles().stream().map(Role::getRole).sorted().collect(Collectors.toList()));
+        }
+        return state;
+    }
+
+    private static Map<String, AuditEntry.Change> diff(Map<String, Object> before, Map<String, Object> after) {
+        Map<String, AuditEntry.Change> changes = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> field : after.entrySet()) {
+            Object previous = before.get(field.getKey());
+            if (!Objects.equals(previous, field.getValue())) {
+                changes.put(field.getKey(), new AuditEntry.Change(previous, field.getValue()));
+            }
+        }
+        for (Map.Entry<String, Object> field : before.entrySet()) {
+            if (!after.containsKey(field.getKey()) && field.getValue() != null) {
+                changes.put(field.getKey(), new AuditEntry.Change(field.getValue(), null));
+            }
+        }
+        return changes;
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        running = false;
+        LockSupport.unpark(writer);
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+    }
+}
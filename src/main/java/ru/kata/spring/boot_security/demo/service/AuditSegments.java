@@ -0,0 +1,302 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import ru.kata.spring.boot_security.demo.dto.AuditEntry;
+import ru.kata.spring.boot_security.demo.dto.AuditPage;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Append-only audit log split into segments of newline-delimited JSON. Each
+ * segment is named after the first sequence it holds, so readers can skip
+ * straight to the segment containing a cursor. Appends, rotation and fsync
+ * belong to a single writer thread; reads may run concurrently from any
+ * thread and skip lines that do not parse, such as a partially written
+ * trailing one.
+ */
+public class AuditSegments implements Closeable {
+
+    private static final String PREFIX = "audit-";
+    private static final String SUFFIX = ".log";
+    private static final int RECOVERY_WINDOW = 1 << 20;
+    private static final int PROBE_BYTES = 4096;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int maxSegments;
+    private final ObjectMapper objectMapper;
+    private final ByteArrayOutputStream pending = new ByteArrayOutputStream(64 * 1024);
+    private FileChannel lockChannel;
+    private FileLock lock;
+    private FileChannel channel;
+
+    public AuditSegments(Path directory, long segmentBytes, int maxSegments, ObjectMapper objectMapper) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.maxSegments = Math.max(1, maxSegments);
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Locks the directory, truncates a torn trailing entry left by a crash and
+     * returns the last sequence that was written.
+     */
+    public long open() throws IOException {
+        Files.createDirectories(directory);
+        lockChannel = FileChannel.open(directory.resolve(".lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            lock = null;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IllegalStateException("Audit directory is in use: " + directory);
+        }
+        List<Path> segments = list();
+        long lastSequence = 0;
+        if (!segments.isEmpty()) {
+            Path last = segments.get(segments.size() - 1);
+            channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            lastSequence = recover(channel, firstSequence(last) - 1);
+            channel.position(channel.size());
+        }
+        if (channel == null) {
+            channel = create(lastSequence + 1);
+        }
+        return lastSequence;
+    }
+
+    public void append(List<AuditEntry> entries) throws IOException {
+        if (entries.isEmpty()) {
+            return;
+        }
+        if (channel.size() >= segmentBytes) {
+            rotate(entries.get(0).getSequence());
+        }
+        pending.reset();
+        for (AuditEntry entry : entries) {
+            objectMapper.writeValue(pending, entry);
+            pending.write('\n');
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    public void force() throws IOException {
+        channel.force(false);
+    }
+
+    /**
+     * Returns up to {@code limit} entries after the cursor, optionally for one
+     * user, scanning at most about {@code maxScanBytes} of entries past the
+     * cursor. The cursor is found by binary search within its segment.
+     */
+    public AuditPage read(long after, int limit, Long userId, long maxScanBytes) throws IOException {
+        List<Path> segments = list();
+        int start = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            if (firstSequence(segments.get(i)) <= after + 1) {
+                start = i;
+            }
+        }
+        List<AuditEntry> entries = new ArrayList<>(Math.min(limit, 256));
+        long next = after;
+        long scanned = 0;
+        for (int i = start; i < segments.size() && entries.size() < limit && scanned < maxScanBytes; i++) {
+            try (FileChannel file = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                file.position(i == start ? offsetAfter(file, after) : 0);
+                BufferedReader reader = new BufferedReader(Channels.newReader(file, StandardCharsets.UTF_8.newDecoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE), -1));
+                String line;
+                while (entries.size() < limit && scanned < maxScanBytes && (line = reader.readLine()) != null) {
+                    scanned += line.length() + 1;
+                    AuditEntry entry;
+                    try {
+                        entry = objectMapper.readValue(line, AuditEntry.class);
+                    } catch (JsonProcessingException e) {
+                        // a torn line at the end of the active segment, or damage mid-file
+                        continue;
+                    }
+                    if (entry.getSequence() <= after) {
+                        continue;
+                    }
+                    next = entry.getSequence();
+                    if (userId == null || userId.equals(entry.getUserId())) {
+                        entries.add(entry);
+                    }
+                }
+            } catch (NoSuchFileException e) {
+                // removed by retention while we were reading
+            }
+        }
+        return new AuditPage(entries, next);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            if (channel != null) {
+                channel.force(false);
+                channel.close();
+            }
+        } finally {
+            if (lock != null) {
+                lock.release();
+                lockChannel.close();
+            }
+        }
+    }
+
+    private void rotate(long firstSequence) throws IOException {
+        channel.force(false);
+        channel.close();
+        channel = create(firstSequence);
+        List<Path> segments = list();
+        for (int i = 0; i < segments.size() - maxSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    private FileChannel create(long firstSequence) throws IOException {
+        Path segment = directory.resolve(String.format("%s%020d%s", PREFIX, firstSequence, SUFFIX));
+        return FileChannel.open(segment, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.READ);
+    }
+
+    private long recover(FileChannel segment, long previousSequence) throws IOException {
+        long size = segment.size();
+        int window = (int) Math.min(size, RECOVERY_WINDOW);
+        ByteBuffer tail = ByteBuffer.allocate(window);
+        while (tail.hasRemaining()) {
+            if (segment.read(tail, size - window + tail.position()) < 0) {
+                break;
+            }
+        }
+        byte[] bytes = tail.array();
+        int end = lastNewline(bytes, window - 1);
+        if (end < 0 && window < size) {
+            throw new IllegalStateException("Corrupt audit segment in " + directory);
+        }
+        segment.truncate(size - window + end + 1);
+        if (end < 0) {
+            return previousSequence;
+        }
+        int start = lastNewline(bytes, end - 1) + 1;
+        return objectMapper.readValue(bytes, start, end - start, AuditEntry.class).getSequence();
+    }
+
+    private long offsetAfter(FileChannel file, long after) throws IOException {
+        long low = 0;
+        long high = file.size();
+        while (low < high) {
+            long middle = (low + high) >>> 1;
+            long[] line = lineAt(file, middle);
+            if (line == null || line[1] > after) {
+                high = middle;
+            } else {
+                low = line[0] + 1;
+            }
+        }
+        long[] line = lineAt(file, low);
+        return line != null ? line[0] : file.size();
+    }
+
+    /**
+     * Start offset and sequence of the first parseable line that starts at or
+     * after {@code position}, or null if there is none.
+     */
+    private long[] lineAt(FileChannel file, long position) throws IOException {
+        long start = position;
+        if (position > 0) {
+            long newline = lineEnd(file, position - 1, null);
+            if (newline < 0) {
+                return null;
+            }
+            start = newline + 1;
+        }
+        ByteArrayOutputStream line = new ByteArrayOutputStream(512);
+        while (true) {
+            line.reset();
+            long end = lineEnd(file, start, line);
+            if (end < 0) {
+                return null;
+            }
+            try {
+                return new long[]{start, objectMapper.readValue(line.toByteArray(), AuditEntry.class).getSequence()};
+            } catch (JsonProcessingException e) {
+                start = end + 1;
+            }
+        }
+    }
+
+    private static long lineEnd(FileChannel file, long from, ByteArrayOutputStream sink) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(PROBE_BYTES);
+        long position = from;
+        while (true) {
+            buffer.clear();
+            int read = file.read(buffer, position);
+            if (read <= 0) {
+                return -1;
+            }
+            byte[] bytes = buffer.array();
+            for (int i = 0; i < read; i++) {
+                if (bytes[i] == '\n') {
+                    if (sink != null) {
+                        sink.write(bytes, 0, i);
+                    }
+                    return position + i;
+                }
+            }
+            if (sink != null) {
+                sink.write(bytes, 0, read);
+            }
+            position += read;
+        }
+    }
+
+    private List<Path> list() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> {
+                String name = path.getFileName().toString();
+                return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+            }).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static int lastNewline(byte[] bytes, int from) {
+        for (int i = from; i >= 0; i--) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
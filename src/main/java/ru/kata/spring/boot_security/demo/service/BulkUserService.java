@@ -0,0 +1,14 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import ru.kata.spring.boot_security.demo.dto.BulkRowResult;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.List;
+
+public interface BulkUserService {
+    void importNdjson(InputStream input, OutputStream output) throws IOException;
+    void importCsv(InputStream input, OutputStream output) throws IOException;
+    List<BulkRowResult> deleteAll(List<Long> ids);
+}
@@ -0,0 +1,379 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.Exception.HashingCapacityExceededException;
+import ru.kata.spring.boot_security.demo.Exception.UnknownRoleException;
+import ru.kata.spring.boot_security.demo.configs.BoundedPasswordEncoder;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.dto.BulkRowResult;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.persistence.EntityManager;
+import javax.validation.ConstraintViolation;
+import javax.validation.Validator;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Service
+public class BulkUserServiceImpl implements BulkUserService {
+
+    private final UserDAO userDAO;
+    private final RoleService roleService;
+    private final BoundedPasswordEncoder passwordEncoder;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final EntityManager entityManager;
+    private final ApplicationEventPublisher eventPublisher;
+    private final AuditLog auditLog;
+    private final int batchSize;
+
+    public BulkUserServiceImpl(UserDAO userDAO, RoleService roleService, BoundedPasswordEncoder passwordEncoder,
+                               Validator validator, ObjectMapper objectMapper,
+                               TransactionTemplate transactionTemplate, EntityManager entityManager,
+                               ApplicationEventPublisher eventPublisher, AuditLog auditLog,
+                               @Value("${app.bulk.batch-size:50}") int batchSize) {
+        this.userDAO = userDAO;
+        this.roleService = roleService;
+        this.passwordEncoder = passwordEncoder;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.entityManager = entityManager;
+        this.eventPublisher = eventPublisher;
+        this.auditLog = auditLog;
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    @Override
+    public void importNdjson(InputStream input, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        importRows(rowNumber -> {
+            String line;
+            do {
+                line = reader.readLine();
+            } while (line != null && line.trim().isEmpty());
+            if (line == null) {
+                return null;
+            }
+            String json = line;
+            return parseRow(rowNumber, () -> objectMapper.readValue(json, User.class));
+        }, output);
+    }
+
+    @Override
+    public void importCsv(InputStream input, OutputStream output) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+        List<String> header = readCsvRecord(reader);
+        Map<String, Integer> columns = new HashMap<>();
+        if (header != null) {
+            for (int i = 0; i < header.size(); i++) {
+                columns.put(header.get(i).trim(), i);
+            }
+        }
+        importRows(rowNumber -> {
+            List<String> record;
+            try {
+                do {
+                    record = header == null ? null : readCsvRecord(reader);
+                } while (record != null && record.size() == 1 && record.get(0).trim().isEmpty());
+            } catch (IllegalArgumentException e) {
+                return new ImportRow(rowNumber, null, "Cannot parse row: " + e.getMessage());
+            }
+            if (record == null) {
+                return null;
+            }
+            List<String> values = record;
+            ImportRow row = parseRow(rowNumber, () -> parseCsv(values, columns));
+            if (row.user != null && column(values, columns, "age") == null) {
+                // a byte field cannot hold null; reject like PATCH does instead of importing age 0
+                row.error = "Field cannot be null: age";
+            }
+            return row;
+        }, output);
+    }
+
+    @Override
+    public List<BulkRowResult> deleteAll(List<Long> ids) {
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(ids));
+        List<BulkRowResult> results = new ArrayList<>(distinct.size());
+        for (int from = 0; from < distinct.size(); from += batchSize) {
+            List<Long> chunk = distinct.subList(from, Math.min(from + batchSize, distinct.size()));
+            Map<Long, String> deleted = transactionTemplate.execute(status -> deleteChunk(chunk));
+            for (int i = 0; i < chunk.size(); i++) {
+                Long id = chunk.get(i);
+                int row = from + i + 1;
+                results.add(deleted.containsKey(id)
+                        ? BulkRowResult.deleted(row, id, deleted.get(id))
+                        : BulkRowResult.notFound(row, id));
+            }
+        }
+        return results;
+    }
+
+    private Map<Long, String> deleteChunk(List<Long> ids) {
+        Map<Long, String> usernames = new HashMap<>();
+        for (Object[] row : userDAO.findUsernamesByIdIn(ids)) {
+            usernames.put((Long) row[0], (String) row[1]);
+        }
+        if (!usernames.isEmpty()) {
+            userDAO.deleteRoleLinksByUserIdIn(usernames.keySet());
+            userDAO.deleteByUserIdIn(usernames.keySet());
+            usernames.forEach((id, username) -> {
+                auditLog.record(UserChangedEvent.Type.DELETED, id, username);
+                eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.DELETED, id, username));
+            });
+        }
+        return usernames;
+    }
+
+    private void importRows(RowSource source, OutputStream output) throws IOException {
+        try (JsonGenerator generator = objectMapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+            generator.writeStartArray();
+            List<ImportRow> chunk = new ArrayList<>(batchSize);
+            int rowNumber = 0;
+            ImportRow row;
+            while ((row = source.next(++rowNumber)) != null) {
+                chunk.add(row);
+                if (chunk.size() == batchSize) {
+                    writeResults(importChunk(chunk), generator);
+                    chunk = new ArrayList<>(batchSize);
+                }
+            }
+            if (!chunk.isEmpty()) {
+                writeResults(importChunk(chunk), generator);
+            }
+            generator.writeEndArray();
+        }
+    }
+
+    private static void writeResults(List<BulkRowResult> results, JsonGenerator generator) throws IOException {
+        for (BulkRowResult result : results) {
+            generator.writeObject(result);
+        }
+        generator.flush();
+    }
+
+    private List<BulkRowResult> importChunk(List<ImportRow> chunk) {
+        chunk.parallelStream()
+                .filter(ImportRow::isPending)
+                .forEach(row -> row.error = validate(row.user));
+
+        List<ImportRow> pending = pending(chunk);
+        Set<String> existing = pending.isEmpty() ? Collections.emptySet()
+                : new HashSet<>(userDAO.findExistingUsernames(
+                pending.stream().map(row -> row.user.getUsername()).collect(Collectors.toList())));
+        Set<String> inChunk = new HashSet<>();
+        for (ImportRow row : pending) {
+            if (existing.contains(row.user.getUsername()) || !inChunk.add(row.user.getUsername())) {
+                row.error = "User with username exist";
+                continue;
+            }
+            try {
+                row.user.setRoles(roleService.resolveRoles(row.user.getRoles()));
+            } catch (UnknownRoleException e) {
+                row.error = e.getMessage();
+                continue;
+            }
+            if (row.user.getRoles().isEmpty()) {
+                row.error = "The role cannot be omitted";
+            }
+        }
+
+        pending = pending(chunk);
+        if (!pending.isEmpty()) {
+            writeChunk(pending);
+        }
+        return chunk.stream().map(ImportRow::toResult).collect(Collectors.toList());
+    }
+
+    private void writeChunk(List<ImportRow> rows) {
+        try {
+            List<String> hashes = passwordEncoder.encodeAll(
+                    rows.stream().map(row -> row.user.getPassword()).collect(Collectors.toList()),
+                    Math.max(1, passwordEncoder.getHashingThreads() / 2));
+            for (int i = 0; i < rows.size(); i++) {
+                rows.get(i).user.setPassword(hashes.get(i));
+            }
+        } catch (HashingCapacityExceededException e) {
+            rows.forEach(row -> row.error = e.getMessage());
+            return;
+        }
+        try {
+            insert(rows);
+        } catch (DataAccessException e) {
+            if (rows.size() == 1) {
+                rows.get(0).error = "Write failed: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+                return;
+            }
+            rows.forEach(this::writeRow);
+        }
+    }
+
+    private void writeRow(ImportRow row) {
+        row.user.setUserId(null);
+        try {
+            insert(Collections.singletonList(row));
+        } catch (DataAccessException e) {
+            row.error = "Write failed: " + NestedExceptionUtils.getMostSpecificCause(e).getMessage();
+        }
+    }
+
+    private void insert(List<ImportRow> rows) {
+        List<User> users = rows.stream().map(row -> row.user).collect(Collectors.toList());
+        transactionTemplate.executeWithoutResult(status -> {
+            userDAO.saveAll(users);
+            // through the repository so a failed batch surfaces as a DataAccessException and is retried per row
+            userDAO.flush();
+            users.forEach(user -> {
+                auditLog.record(UserChangedEvent.Type.CREATED, user);
+                eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.CREATED, user));
+            });
+            entityManager.clear();
+        });
+        rows.forEach(row -> row.created = true);
+    }
+
+    private String validate(User user) {
+        return validator.validate(user).stream()
+                .map(ConstraintViolation::getMessage)
+                .collect(Collectors.joining("; "));
+    }
+
+    private static List<ImportRow> pending(List<ImportRow> chunk) {
+        return chunk.stream().filter(ImportRow::isPending).collect(Collectors.toList());
+    }
+
+    private static ImportRow parseRow(int rowNumber, RowParser parser) {
+        try {
+            return new ImportRow(rowNumber, parser.parse(), null);
+        } catch (Exception e) {
+            return new ImportRow(rowNumber, null, "Cannot parse row: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads one RFC 4180 record, the format written by the CSV export: fields
+     * may be quoted, and quoted fields may contain commas, doubled quotes and
+     * line breaks. Returns null at the end of the input.
+     */
+    static List<String> readCsvRecord(Reader reader) throws IOException {
+        int c = reader.read();
+        if (c < 0) {
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        StringBuilder value = new StringBuilder();
+        boolean quoted = false;
+        while (c >= 0) {
+            if (quoted) {
+                if (c == '"') {
+                    c = reader.read();
+                    if (c != '"') {
+                        quoted = false;
+                        continue;
+                    }
+                }
+                value.append((char) c);
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                values.add(value.toString());
+                value.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                value.append((char) c);
+            }
+            c = reader.read();
+        }
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        values.add(value.toString());
+        return values;
+    }
+
+    private static User parseCsv(List<String> values, Map<String, Integer> columns) {
+        User user = new User();
+        user.setUsername(column(values, columns, "username"));
+        user.setPassword(column(values, columns, "password"));
+        user.setName(column(values, columns, "name"));
+        user.setSurname(column(values, columns, "surname"));
+        user.setEmail(column(values, columns, "email"));
+        String age = column(values, columns, "age");
+        if (age != null) {
+            user.setAge(Byte.parseByte(age));
+        }
+        String roles = column(values, columns, "roles");
+        user.setRoles(roles == null ? new HashSet<>() : Arrays.stream(roles.split("\\|"))
+                .map(String::trim)
+                .map(Role::new)
+                .collect(Collectors.toSet()));
+        return user;
+    }
+
+    private static String column(List<String> values, Map<String, Integer> columns, String name) {
+        Integer index = columns.get(name);
+        if (index == null || index >= values.size() || values.get(index).trim().isEmpty()) {
+            return null;
+        }
+        return values.get(index).trim();
+    }
+
+    private interface RowSource {
+        ImportRow next(int rowNumber) throws IOException;
+    }
+
+    private interface RowParser {
+        User parse() throws Exception;
+    }
+
+    private static final class ImportRow {
+        final int row;
+        final User user;
+        String error;
+        boolean created;
+
+        ImportRow(int row, User user, String error) {
+            this.row = row;
+            this.user = user;
+            this.error = error;
+        }
+
+        boolean isPending() {
+            return !created && (error == null || error.isEmpty());
+        }
+
+        BulkRowResult toResult() {
+            String username = user == null ? null : user.getUsername();
+            return created ? BulkRowResult.created(row, user.getUserId(), username)
+                    : BulkRowResult.failed(row, username, error);
+        }
+    }
+}
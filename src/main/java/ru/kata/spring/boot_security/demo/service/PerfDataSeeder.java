@@ -0,0 +1,72 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.annotation.Profile;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+@Component
+@Profile("perf")
+public class PerfDataSeeder {
+
+    private static final String USERNAME =
+            "concat('perf', translate(cast(n as varchar), '0123456789', 'abcdefghij'))";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final RoleService roleService;
+    private final PasswordEncoder passwordEncoder;
+    private final long users;
+    private final long chunkSize;
+    private final String password;
+
+    public PerfDataSeeder(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                          RoleService roleService, PasswordEncoder passwordEncoder,
+                          @Value("${app.perf.seed.users:100000}") long users,
+                          @Value("${app.perf.seed.chunk-size:100000}") long chunkSize,
+                          @Value("${app.perf.seed.password:password}") String password) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.roleService = roleService;
+        this.passwordEncoder = passwordEncoder;
+        this.users = users;
+        this.chunkSize = chunkSize;
+        this.password = password;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void seed() {
+        roleService.addDefaultRole();
+        Long existing = jdbcTemplate.queryForObject("select count(*) from user", Long.class);
+        if (existing != null && existing > 0) {
+            return;
+        }
+        String hash = passwordEncoder.encode(password);
+        long userRole = roleService.findByName("ROLE_USER").getId();
+        long adminRole = roleService.findByName("ROLE_ADMIN").getId();
+        for (long start = 1; start <= users; start += chunkSize) {
+            long from = start;
+            long to = Math.min(users, start + chunkSize - 1);
+            transactionTemplate.executeWithoutResult(status -> insertChunk(from, to, hash, userRole));
+        }
+        if (users > 0) {
+            jdbcTemplate.update("insert into users_roles (user_id, roles_id) values (1, ?)", adminRole);
+        }
+        jdbcTemplate.execute("alter sequence user_seq restart with " + (users + 100));
+    }
+
+    private void insertChunk(long from, long to, String hash, long userRole) {
+        jdbcTemplate.update("insert into user (user_id, name, surname, age, email, username, password, version)"
+                + " select n, 'Perf', 'User', mod(n, 100), concat(" + USERNAME + ", '@perf.local'), "
+                + USERNAME + ", ?, 0 from system_range(?, ?) r(n)", hash, from, to);
+        jdbcTemplate.update("insert into users_roles (user_id, roles_id) select n, ? from system_range(?, ?) r(n)",
+                userRole, from, to);
+    }
+}
@@ -0,0 +1,38 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import ru.kata.spring.boot_security.demo.dao.SchemaSeedDAO;
+import ru.kata.spring.boot_security.demo.model.SchemaSeed;
+
+@Component
+public class RoleSeeder {
+
+    private final RoleService roleService;
+    private final SchemaSeedDAO schemaSeedDAO;
+    private final String schemaVersion;
+
+    public RoleSeeder(RoleService roleService, SchemaSeedDAO schemaSeedDAO,
+                      @Value("${app.seed.schema-version:1}") String schemaVersion) {
+        this.roleService = roleService;
+        this.schemaSeedDAO = schemaSeedDAO;
+        this.schemaVersion = schemaVersion;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void seed() {
+        if (schemaSeedDAO.existsById(schemaVersion)) {
+            return;
+        }
+        try {
+            roleService.addDefaultRole();
+            schemaSeedDAO.saveAndFlush(new SchemaSeed(schemaVersion));
+        } catch (DataIntegrityViolationException e) {
+            // another node seeded the same roles or version first; uk_role_role kept them unique
+            roleService.reloadRoles();
+        }
+    }
+}
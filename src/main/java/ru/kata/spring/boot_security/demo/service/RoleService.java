@@ -11,4 +11,9 @@ public interface RoleService {
     List<Role> findAllRole();
     void addDefaultRole();
     Set<Role> findByIdRoles(List<Long>roles);
+    Role findById(Long id);
+    Role findByName(String name);
+    Set<Role> resolveRoles(Set<Role> roles);
+    Role save(Role role);
+    void reloadRoles();
 }
@@ -1,36 +1,174 @@
 package ru.kata.spring.boot_security.demo.service;
 
+import io.micrometer.core.annotation.Timed;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.kata.spring.boot_security.demo.Exception.UnknownRoleException;
 import ru.kata.spring.boot_security.demo.dao.RoleDAO;
 import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.RoleAuthorities;
+
 import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "role.service", histogram = true)
 public class RoleServiceImpl implements RoleService{
 
+    private static final List<String> DEFAULT_ROLES = List.of("ROLE_USER", "ROLE_ADMIN");
+
+    private static final int MAX_MISSING_ENTRIES = 1000;
+
     private final RoleDAO roleDAO;
+    private final long missingTtlNanos;
+    private final Map<Object, Long> missing = new ConcurrentHashMap<>();
+
+    private volatile RoleSnapshot roles = RoleSnapshot.EMPTY;
 
-    public RoleServiceImpl(RoleDAO roleDAO) {
+    public RoleServiceImpl(RoleDAO roleDAO, @Value("${app.roles.missing-ttl:PT1M}") Duration missingTtl) {
         this.roleDAO = roleDAO;
+        this.missingTtlNanos = missingTtl.toNanos();
     }
 
     @Override
     public List<Role> findAllRole() {
-        return roleDAO.findAll();
+        return roles.all;
     }
 
     @Override
-    @PostConstruct
+    @Transactional
     public void addDefaultRole() {
-        roleDAO.save(new Role("ROLE_USER"));
-        roleDAO.save(new Role("ROLE_ADMIN"));
+        Set<String> existing = roleDAO.findByRoleIn(DEFAULT_ROLES).stream()
+                .map(Role::getRole)
+                .collect(Collectors.toSet());
+        List<Role> missing = DEFAULT_ROLES.stream()
+                .filter(role -> !existing.contains(role))
+                .map(Role::new)
+                .collect(Collectors.toList());
+        if (!missing.isEmpty()) {
+            roleDAO.saveAllAndFlush(missing);
+        }
+        reloadRoles();
     }
 
     @Override
     public Set<Role> findByIdRoles(List<Long> roles) {
-      return new HashSet<>(roleDAO.findAllById(roles));
+        Set<Role> result = new HashSet<>();
+        for (Long id : roles) {
+            Role role = findById(id);
+            if (role != null) {
+                result.add(role);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public Role findById(Long id) {
+        if (id == null) {
+            return null;
+        }
+        Role role = roles.byId.get(id);
+        if (role == null && !isKnownMissing(id)) {
+            if (roleDAO.existsById(id)) {
+                reloadRoles();
+                role = roles.byId.get(id);
+            } else {
+                rememberMissing(id);
+            }
+        }
+        return role;
+    }
+
+    @Override
+    public Role findByName(String name) {
+        if (name == null) {
+            return null;
+        }
+        Role role = roles.byName.get(name);
+        if (role == null && !isKnownMissing(name)) {
+            if (!roleDAO.findByRole(name).isEmpty()) {
+                reloadRoles();
+                role = roles.byName.get(name);
+            } else {
+                rememberMissing(name);
+            }
+        }
+        return role;
+    }
+
+    @Override
+    public Set<Role> resolveRoles(Set<Role> requested) {
+        Set<Role> result = new HashSet<>();
+        if (requested == null) {
+            return result;
+        }
+        for (Role role : requested) {
+            Role cached = Optional.ofNullable(findById(role.getId())).orElseGet(() -> findByName(role.getRole()));
+            if (cached == null) {
+                throw new UnknownRoleException("Unknown role: "
+                        + (role.getRole() != null ? role.getRole() : role.getId()));
+            }
+            result.add(cached);
+        }
+        return result;
+    }
+
+    @Override
+    public Role save(Role role) {
+        Role saved = roleDAO.save(role);
+        reloadRoles();
+        return saved;
+    }
+
+    @Override
+    @PostConstruct
+    public synchronized void reloadRoles() {
+        roles = new RoleSnapshot(roleDAO.findAll());
+        missing.clear();
+    }
+
+    private boolean isKnownMissing(Object key) {
+        Long expiresAt = missing.get(key);
+        return expiresAt != null && expiresAt - System.nanoTime() > 0;
+    }
+
+    private void rememberMissing(Object key) {
+        if (missing.size() >= MAX_MISSING_ENTRIES) {
+            missing.clear();
+        }
+        missing.put(key, System.nanoTime() + missingTtlNanos);
+    }
+
+    private static final class RoleSnapshot {
+
+        static final RoleSnapshot EMPTY = new RoleSnapshot(Collections.emptyList());
+
+        final List<Role> all;
+        final Map<Long, Role> byId = new HashMap<>();
+        final Map<String, Role> byName = new HashMap<>();
+
+        RoleSnapshot(List<Role> loaded) {
+            List<Role> sorted = new ArrayList<>(loaded);
+            sorted.sort(Comparator.comparing(Role::getId));
+            for (Role role : sorted) {
+                byId.put(role.getId(), role);
+                byName.putIfAbsent(role.getRole(), role);
+                RoleAuthorities.of(role.getRole());
+            }
+            all = Collections.unmodifiableList(sorted);
+        }
     }
 }
@@ -0,0 +1,147 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Answers conditional GETs from memory. The table counter and the remembered
+ * per-user ETags only see changes made through this JVM, so they are correct
+ * for a single node only. With {@code app.etag.single-node=false} the list
+ * endpoint sends no ETag and user ETags are always derived from the loaded
+ * row's {@code @Version}.
+ */
+@Component
+public class UserChangeTracker {
+
+    private final AtomicLong tableVersion = new AtomicLong(System.currentTimeMillis());
+    private final LinkedHashMap<Long, Remembered> etagById;
+    private final Map<String, Long> idByUsername = new HashMap<>();
+    private final boolean singleNode;
+
+    public UserChangeTracker(@Value("${app.etag.max-entries:100000}") int maxEntries,
+                             @Value("${app.etag.single-node:true}") boolean singleNode) {
+        this.singleNode = singleNode;
+        this.etagById = new LinkedHashMap<Long, Remembered>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Remembered> eldest) {
+                if (size() <= maxEntries) {
+                    return false;
+                }
+                idByUsername.remove(eldest.getValue().username, eldest.getKey());
+                return true;
+            }
+        };
+    }
+
+    public long stamp() {
+        return tableVersion.get();
+    }
+
+    public String listEtag(Object... parameters) {
+        if (!singleNode) {
+            return null;
+        }
+        return "W/\"" + Long.toHexString(tableVersion.get()) + "-"
+                + Integer.toHexString(Arrays.hashCode(parameters)) + "\"";
+    }
+
+    public String etagById(long userId) {
+        if (!singleNode) {
+            return null;
+        }
+        synchronized (etagById) {
+            Remembered remembered = etagById.get(userId);
+            return remembered == null ? null : remembered.etag;
+        }
+    }
+
+    public String etagByUsername(String username) {
+        if (!singleNode) {
+            return null;
+        }
+        synchronized (etagById) {
+            Long userId = idByUsername.get(username);
+            Remembered remembered = userId == null ? null : etagById.get(userId);
+            return remembered == null ? null : remembered.etag;
+        }
+    }
+
+    public static String userEtag(long userId, long version) {
+        return "\"" + userId + "-" + version + "\"";
+    }
+
+    public static Long parseVersion(String ifMatch, long userId) {
+        if (ifMatch == null || ifMatch.trim().equals("*")) {
+            return null;
+        }
+        String value = ifMatch.trim();
+        if (value.startsWith("W/")) {
+            return -1L;
+        }
+        String prefix = "\"" + userId + "-";
+        if (!value.startsWith(prefix) || !value.endsWith("\"")) {
+            return -1L;
+        }
+        try {
+            return Long.parseLong(value.substring(prefix.length(), value.length() - 1));
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    public void remember(long userId, String username, String etag, long stamp) {
+        if (!singleNode) {
+            return;
+        }
+        synchronized (etagById) {
+            forget(userId, username);
+            if (tableVersion.get() != stamp) {
+                return;
+            }
+            etagById.put(userId, new Remembered(username, etag));
+            idByUsername.put(username, userId);
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        tableVersion.incrementAndGet();
+        forget(event.getUserId(), event.getUsername());
+    }
+
+    private void forget(Long userId, String username) {
+        synchronized (etagById) {
+            if (userId != null) {
+                Remembered previous = etagById.remove(userId);
+                if (previous != null) {
+                    idByUsername.remove(previous.username, userId);
+                }
+            }
+            if (username != null) {
+                Long previousId = idByUsername.remove(username);
+                if (previousId != null) {
+                    etagById.remove(previousId);
+                }
+            }
+        }
+    }
+
+    private static final class Remembered {
+
+        private final String username;
+        private final String etag;
+
+        private Remembered(String username, String etag) {
+            this.username = username;
+            this.etag = etag;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ru.kata.spring.boot_security.demo.dto.UserDelta;
+import ru.kata.spring.boot_security.demo.dto.UserDetailView;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Fans user changes out to SSE subscribers. Each subscriber has its own
+ * bounded queue drained by a sender task, so a client that stops reading only
+ * fills its own queue; once that overflows the subscriber is completed and
+ * can resume from the replay buffer with Last-Event-ID. Sender tasks run on a
+ * fixed pool with a bounded backlog of subscribers waiting for a thread; a
+ * subscriber that finds the backlog full is completed the same way.
+ */
+@Component
+public class UserEventBroadcaster {
+
+    private static final String RESET_EVENT = "reset";
+
+    private final ObjectMapper objectMapper;
+    private final ScheduledExecutorService dispatcher;
+    private final ExecutorService sender;
+    private final List<Subscriber> subscribers = new CopyOnWriteArrayList<>();
+    private final Deque<Entry> replay = new ArrayDeque<>();
+    private final int replaySize;
+    private final int queueCapacity;
+    private final long emitterTimeoutMillis;
+    private long sequence;
+
+    public UserEventBroadcaster(ObjectMapper objectMapper,
+                                @Value("${app.user-events.replay-size:256}") int replaySize,
+                                @Value("${app.user-events.subscriber-queue:64}") int queueCapacity,
+                                @Value("${app.user-events.timeout:PT30M}") Duration emitterTimeout,
+                                @Value("${app.user-events.heartbeat:PT15S}") Duration heartbeat,
+                                @Value("${app.user-events.send-threads:4}") int sendThreads,
+                                @Value("${app.user-events.send-backlog:1024}") int sendBacklog) {
+        this.objectMapper = objectMapper;
+        this.replaySize = replaySize;
+        this.queueCapacity = Math.max(1, queueCapacity) + Math.max(0, replaySize);
+        this.emitterTimeoutMillis = emitterTimeout.toMillis();
+        this.dispatcher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-events");
+            thread.setDaemon(true);
+            return thread;
+        });
+        AtomicInteger senders = new AtomicInteger();
+        int threads = Math.max(1, sendThreads);
+        this.sender = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, sendBacklog)), runnable -> {
+            Thread thread = new Thread(runnable, "user-events-send-" + senders.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        dispatcher.scheduleAtFixedRate(this::heartbeat, heartbeat.toMillis(), heartbeat.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    public SseEmitter subscribe(Long lastEventId) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMillis);
+        Subscriber subscriber = new Subscriber(emitter, queueCapacity);
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(() -> subscribers.remove(subscriber));
+        emitter.onError(e -> subscribers.remove(subscriber));
+        synchronized (replay) {
+            if (lastEventId != null) {
+                long oldest = replay.isEmpty() ? sequence : replay.getFirst().id - 1;
+                if (lastEventId < oldest || lastEventId > sequence) {
+                    long current = sequence;
+                    subscriber.offer(() -> SseEmitter.event().id(Long.toString(current)).name(RESET_EVENT).data(""));
+                } else {
+                    for (Entry entry : replay) {
+                        if (entry.id > lastEventId) {
+                            subscriber.offer(entry::event);
+                        }
+                    }
+                }
+            }
+            subscribers.add(subscriber);
+        }
+        return emitter;
+    }
+
+    public int getSubscriberCount() {
+        return subscribers.size();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        UserDetailView user = event.getType() != UserChangedEvent.Type.DELETED && event.getUser() != null
+                && !subscribers.isEmpty() ? UserDetailView.of(event.getUser()) : null;
+        dispatcher.execute(() -> publish(event, user));
+    }
+
+    private void publish(UserChangedEvent event, UserDetailView user) {
+        synchronized (replay) {
+            UserDelta delta = new UserDelta(++sequence, event.getType(), event.getUserId(), event.getUsername(), user);
+            Entry entry;
+            try {
+                entry = new Entry(delta.getSequence(), event.getType().name().toLowerCase(),
+                        objectMapper.writeValueAsString(delta));
+            } catch (JsonProcessingException e) {
+                throw new IllegalStateException(e);
+            }
+            replay.addLast(entry);
+            while (replay.size() > replaySize) {
+                replay.removeFirst();
+            }
+            send(entry::event);
+        }
+    }
+
+    private void heartbeat() {
+        send(() -> SseEmitter.event().comment("heartbeat"));
+    }
+
+    private void send(Supplier<SseEmitter.SseEventBuilder> event) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.offer(event)) {
+                subscribers.remove(subscriber);
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        dispatcher.shutdownNow();
+        sender.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        subscribers.clear();
+    }
+
+    private final class Subscriber implements Runnable {
+
+        private final SseEmitter emitter;
+        private final BlockingQueue<Supplier<SseEmitter.SseEventBuilder>> pending;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile boolean overflowed;
+
+        private Subscriber(SseEmitter emitter, int capacity) {
+            this.emitter = emitter;
+            this.pending = new ArrayBlockingQueue<>(capacity);
+        }
+
+        private boolean offer(Supplier<SseEmitter.SseEventBuilder> event) {
+            if (!pending.offer(event)) {
+                overflowed = true;
+                schedule();
+                return false;
+            }
+            schedule();
+            return true;
+        }
+
+        private void schedule() {
+            if (scheduled.compareAndSet(false, true)) {
+                try {
+                    sender.execute(this);
+                } catch (RejectedExecutionException e) {
+                    overflowed = true;
+                    pending.clear();
+                    subscribers.remove(this);
+                    emitter.complete();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                Supplier<SseEmitter.SseEventBuilder> event;
+                while (!overflowed && (event = pending.poll()) != null) {
+                    emitter.send(event.get());
+                }
+                if (overflowed) {
+                    pending.clear();
+                    emitter.complete();
+                    return;
+                }
+            } catch (IOException | IllegalStateException e) {
+                overflowed = true;
+                pending.clear();
+                subscribers.remove(this);
+                return;
+            } finally {
+                scheduled.set(false);
+            }
+            if (!pending.isEmpty()) {
+                schedule();
+            }
+        }
+    }
+
+    private static final class Entry {
+
+        private final long id;
+        private final String name;
+        private final String json;
+
+        private Entry(long id, String name, String json) {
+            this.id = id;
+            this.name = name;
+            this.json = json;
+        }
+
+        private SseEmitter.SseEventBuilder event() {
+            return SseEmitter.event().id(Long.toString(id)).name(name).data(json);
+        }
+    }
+}
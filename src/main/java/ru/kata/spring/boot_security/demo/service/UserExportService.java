@@ -0,0 +1,9 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+public interface UserExportService {
+    void exportNdjson(OutputStream output) throws IOException;
+    void exportCsv(OutputStream output) throws IOException;
+}
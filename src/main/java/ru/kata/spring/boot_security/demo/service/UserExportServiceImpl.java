@@ -0,0 +1,111 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Service
+public class UserExportServiceImpl implements UserExportService {
+
+    private final UserDAO userDAO;
+    private final ObjectMapper objectMapper;
+
+    public UserExportServiceImpl(UserDAO userDAO, ObjectMapper objectMapper) {
+        this.userDAO = userDAO;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportNdjson(OutputStream output) throws IOException {
+        try (Stream<Object[]> rows = userDAO.streamExportRows();
+             JsonGenerator generator = objectMapper.getFactory().createGenerator(output, JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+            forEachUser(rows, (row, roles) -> {
+                generator.writeStartObject();
+                generator.writeNumberField("userId", (Long) row[0]);
+                generator.writeStringField("username", (String) row[1]);
+                generator.writeStringField("name", (String) row[2]);
+                generator.writeStringField("surname", (String) row[3]);
+                generator.writeNumberField("age", (Byte) row[4]);
+                generator.writeStringField("email", (String) row[5]);
+                generator.writeArrayFieldStart("roles");
+                for (String role : roles) {
+                    generator.writeString(role);
+                }
+                generator.writeEndArray();
+                generator.writeEndObject();
+                generator.writeRaw('\n');
+            });
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void exportCsv(OutputStream output) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+        writer.write("userId,username,name,surname,age,email,roles\n");
+        try (Stream<Object[]> rows = userDAO.streamExportRows()) {
+            forEachUser(rows, (row, roles) -> {
+                writer.write(String.valueOf(row[0]));
+                for (int i = 1; i <= 5; i++) {
+                    writer.write(',');
+                    writer.write(csv(row[i]));
+                }
+                writer.write(',');
+                writer.write(csv(String.join("|", roles)));
+                writer.write('\n');
+            });
+        }
+        writer.flush();
+    }
+
+    private static void forEachUser(Stream<Object[]> rows, UserWriter writer) throws IOException {
+        Iterator<Object[]> iterator = rows.iterator();
+        Object[] current = null;
+        List<String> roles = new ArrayList<>();
+        while (iterator.hasNext()) {
+            Object[] row = iterator.next();
+            if (current != null && !current[0].equals(row[0])) {
+                writer.write(current, roles);
+                roles.clear();
+            }
+            current = row;
+            if (row[6] != null) {
+                roles.add((String) row[6]);
+            }
+        }
+        if (current != null) {
+            writer.write(current, roles);
+        }
+    }
+
+    private static String csv(Object value) {
+        if (value == null) {
+            return "";
+        }
+        String text = value.toString();
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0 && text.indexOf('\n') < 0) {
+            return text;
+        }
+        return '"' + text.replace("\"", "\"\"") + '"';
+    }
+
+    private interface UserWriter {
+        void write(Object[] row, List<String> roles) throws IOException;
+    }
+}
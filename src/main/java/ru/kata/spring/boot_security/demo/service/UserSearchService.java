@@ -0,0 +1,11 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import ru.kata.spring.boot_security.demo.dto.UserSearchHit;
+
+import java.util.List;
+
+public interface UserSearchService {
+    List<UserSearchHit> search(String query, int limit);
+    void rebuild();
+    int size();
+}
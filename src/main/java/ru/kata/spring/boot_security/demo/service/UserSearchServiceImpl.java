@@ -0,0 +1,119 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.dto.UserSearchHit;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+@Service
+public class UserSearchServiceImpl implements UserSearchService {
+
+    private final UserDAO userDAO;
+    private final TransactionTemplate readOnlyTransaction;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private UserTrigramIndex index = new UserTrigramIndex();
+    private volatile Map<Long, UserChangedEvent> changedDuringBuild;
+
+    public UserSearchServiceImpl(UserDAO userDAO, PlatformTransactionManager transactionManager,
+                                 MeterRegistry meterRegistry) {
+        this.userDAO = userDAO;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        Gauge.builder("user.search.index.size", this, UserSearchService::size).register(meterRegistry);
+    }
+
+    @Override
+    public List<UserSearchHit> search(String query, int limit) {
+        lock.readLock().lock();
+        try {
+            return index.search(query, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Map<Long, UserChangedEvent> changed = new ConcurrentHashMap<>();
+        changedDuringBuild = changed;
+        UserTrigramIndex fresh = new UserTrigramIndex();
+        readOnlyTransaction.executeWithoutResult(status -> {
+            try (Stream<Object[]> rows = userDAO.streamSearchRows()) {
+                rows.forEach(row -> fresh.put(new UserSearchHit((Long) row[0], (String) row[1],
+                        (String) row[2], (String) row[3], (String) row[4])));
+            }
+        });
+        lock.writeLock().lock();
+        try {
+            index = fresh;
+            changedDuringBuild = null;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        changed.values().forEach(this::apply);
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getUserId() == null) {
+            return;
+        }
+        Map<Long, UserChangedEvent> changed = changedDuringBuild;
+        if (changed != null) {
+            changed.put(event.getUserId(), event);
+        }
+        apply(event);
+    }
+
+    private void apply(UserChangedEvent event) {
+        UserSearchHit hit;
+        if (event.getType() == UserChangedEvent.Type.DELETED) {
+            hit = null;
+        } else if (event.getUser() != null) {
+            hit = toHit(event.getUser());
+        } else {
+            hit = userDAO.findById(event.getUserId()).map(UserSearchServiceImpl::toHit).orElse(null);
+        }
+        lock.writeLock().lock();
+        try {
+            if (hit == null) {
+                index.remove(event.getUserId());
+            } else {
+                index.put(hit);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static UserSearchHit toHit(User user) {
+        return new UserSearchHit(user.getUserId(), user.getUsername(), user.getName(), user.getSurname(),
+                user.getEmail());
+    }
+}
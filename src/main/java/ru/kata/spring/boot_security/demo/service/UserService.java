@@ -1,8 +1,13 @@
 package ru.kata.spring.boot_security.demo.service;
 
+import com.fasterxml.jackson.databind.JsonNode;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.BindingResult;
 import ru.kata.spring.boot_security.demo.Exception.ExceptionInfo;
+import ru.kata.spring.boot_security.demo.dto.UserDetailView;
+import ru.kata.spring.boot_security.demo.dto.UserFilter;
+import ru.kata.spring.boot_security.demo.dto.UserPage;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
 import ru.kata.spring.boot_security.demo.model.User;
 
 import java.util.List;
@@ -10,12 +15,17 @@ import java.util.List;
 public interface UserService {
 
     List<User> findAll ();
+    UserPage<UserSummary> findPage(long after, int limit, UserFilter filter);
+    UserDetailView getDetailById(long id);
+    UserDetailView getDetailByUsername(String username);
     User getById(long id);
     void save(User user);
-    void deleteById(long id);
+    boolean deleteById(long id);
 
     ResponseEntity<ExceptionInfo> edit(long id, User user,
-                                       BindingResult bindingResult);
+                                       BindingResult bindingResult, Long expectedVersion);
+
+    ResponseEntity<ExceptionInfo> patch(long id, JsonNode patch, Long expectedVersion);
 
     User findByUsername(String username);
    // void addDefaultUser();
@@ -1,36 +1,85 @@
 package ru.kata.spring.boot_security.demo.service;
 
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.annotation.Timed;
+import org.hibernate.Hibernate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.support.DefaultMessageSourceResolvable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
 import ru.kata.spring.boot_security.demo.Exception.ExceptionInfo;
 import ru.kata.spring.boot_security.demo.Exception.UserUsernameExistException;
-import ru.kata.spring.boot_security.demo.dao.RoleDAO;
 import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.dto.UserDetailView;
+import ru.kata.spring.boot_security.demo.dto.UserFilter;
+import ru.kata.spring.boot_security.demo.dto.UserPage;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+import ru.kata.spring.boot_security.demo.model.Role;
 import ru.kata.spring.boot_security.demo.model.User;
 
+import javax.validation.ConstraintViolation;
 import javax.validation.Valid;
+import javax.validation.Validator;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
+@Timed(value = "user.service", histogram = true)
 public class UserServiceImpl implements UserService {
 
+    private static final String USERNAME_EXISTS = "User with username exist";
+
     private final UserDAO userDAO;
-    private final RoleDAO roleDAO;
+    private final RoleService roleService;
     private final PasswordEncoder passwordEncoder;
+    private final ApplicationEventPublisher eventPublisher;
+    private final Validator validator;
+    private final ObjectMapper objectMapper;
+    private final UsernameRegistry usernameRegistry;
+    private final AuditLog auditLog;
+    private final TransactionTemplate transactionTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+    private final boolean entityCacheEnabled;
 
-    public UserServiceImpl(UserDAO userDAO, RoleDAO roleDAO, PasswordEncoder passwordEncoder) {
+    public UserServiceImpl(UserDAO userDAO, RoleService roleService, PasswordEncoder passwordEncoder,
+                           ApplicationEventPublisher eventPublisher, Validator validator,
+                           ObjectMapper objectMapper, UsernameRegistry usernameRegistry, AuditLog auditLog,
+                           PlatformTransactionManager transactionManager,
+                           @Value("${app.l2-cache.enabled:true}") boolean entityCacheEnabled) {
         this.userDAO = userDAO;
-        this.roleDAO = roleDAO;
+        this.roleService = roleService;
         this.passwordEncoder = passwordEncoder;
+        this.eventPublisher = eventPublisher;
+        this.validator = validator;
+        this.objectMapper = objectMapper;
+        this.usernameRegistry = usernameRegistry;
+        this.auditLog = auditLog;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.entityCacheEnabled = entityCacheEnabled;
     }
 
     @Override
@@ -44,17 +93,73 @@ public class UserServiceImpl implements UserService {
         return userDAO.findAll();
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public UserPage<UserSummary> findPage(long after, int limit, UserFilter filter) {
+        List<UserSummary> users = userDAO.findSummaryPageAfter(after, filter.usernamePattern(),
+                filter.emailPattern(), filter.getRole(), PageRequest.of(0, limit + 1));
+        String nextCursor = null;
+        if (users.size() > limit) {
+            users = users.subList(0, limit);
+            nextCursor = UserPage.encodeCursor(users.get(limit - 1).getUserId());
+        }
+        if (users.isEmpty()) {
+            return new UserPage<>(Collections.emptyList(), null);
+        }
+        Map<Long, UserSummary> byId = new HashMap<>();
+        users.forEach(user -> byId.put(user.getUserId(), user));
+        for (Object[] row : userDAO.findRoleNamesByUserIdIn(byId.keySet())) {
+            byId.get((Long) row[0]).getRoles().add((String) row[1]);
+        }
+        return new UserPage<>(users, nextCursor);
+    }
+
+    /**
+     * With the second-level cache on, maps the cached entity, which writes
+     * keep current, so repeated reads need no SQL. Without it, reads the
+     * projection and its role names instead of loading a managed entity.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public UserDetailView getDetailById(long id) {
+        if (entityCacheEnabled) {
+            return userDAO.findById(id).map(UserDetailView::of).orElse(null);
+        }
+        return withRoles(userDAO.findDetailById(id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public UserDetailView getDetailByUsername(String username) {
+        if (entityCacheEnabled) {
+            return UserDetailView.of(userDAO.findByUsername(username));
+        }
+        return withRoles(userDAO.findDetailByUsername(username));
+    }
+
+    private UserDetailView withRoles(UserDetailView user) {
+        if (user != null) {
+            for (Object[] row : userDAO.findRoleNamesByUserIdIn(List.of(user.getUserId()))) {
+                user.getRoles().add((String) row[1]);
+            }
+        }
+        return user;
+    }
+
     @Override
     public ResponseEntity<ExceptionInfo> create(@Valid @RequestBody User user, BindingResult bindingResult) {
         if (bindingResult.hasErrors()) {
             String error = getErrorsFromBindingResult(bindingResult);
             return new ResponseEntity<>(new ExceptionInfo(error), HttpStatus.BAD_REQUEST);
         }
+        if (usernameRegistry.isTaken(user.getUsername(), null)) {
+            throw new UserUsernameExistException(USERNAME_EXISTS);
+        }
         try {
             save(user);
             return new ResponseEntity<>(HttpStatus.OK);
-        } catch (UserUsernameExistException u) {
-            throw new UserUsernameExistException("User with username exist");
+        } catch (DataIntegrityViolationException e) {
+            throw usernameConflictOr(e, user.getUsername(), null);
         }
     }
 
@@ -68,43 +173,232 @@ public class UserServiceImpl implements UserService {
         return user;
     }
 
+    /**
+     * Hashes the password before opening the transaction, so the connection
+     * is held only for the write itself.
+     */
     @Override
-    @Transactional
     public void save(User user) {
-        userDAO.save(passwordCoder(user));
+        passwordCoder(user);
+        transactionTemplate.executeWithoutResult(status -> {
+            UserChangedEvent.Type type = user.getUserId() == null
+                    ? UserChangedEvent.Type.CREATED : UserChangedEvent.Type.UPDATED;
+            user.setRoles(roleService.resolveRoles(user.getRoles()));
+            User saved = userDAO.save(user);
+            auditLog.record(type, saved);
+            eventPublisher.publishEvent(new UserChangedEvent(type, saved, null,
+                    type == UserChangedEvent.Type.UPDATED));
+        });
     }
 
     @Override
     @Transactional
     public void update(User user) {
-        userDAO.save(user);
+        update(user, null, false);
+    }
+
+    private void update(User user, Map<String, Object> before, boolean passwordChanged) {
+        applyRoles(user, user.getRoles());
+        User saved = userDAO.save(user);
+        auditLog.record(UserChangedEvent.Type.UPDATED, before, saved);
+        String previousUsername = before != null ? (String) before.get("username") : null;
+        eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.UPDATED, saved, previousUsername,
+                passwordChanged));
     }
 
     @Override
     @Transactional
-    public void deleteById(long id) {
-        userDAO.deleteById(id);
+    public boolean deleteById(long id) {
+        Optional<User> found = userDAO.findById(id);
+        if (found.isEmpty()) {
+            return false;
+        }
+        User user = found.get();
+        userDAO.delete(user);
+        auditLog.record(UserChangedEvent.Type.DELETED, user);
+        eventPublisher.publishEvent(new UserChangedEvent(UserChangedEvent.Type.DELETED,
+                user.getUserId(), user.getUsername()));
+        return true;
     }
 
+    /**
+     * Validation, the duplicate-username check and password hashing run
+     * before the transaction. The transaction only covers load, version
+     * check, apply and flush.
+     */
     @Override
     public ResponseEntity<ExceptionInfo> edit(@PathVariable("id") long id,
                                               @Valid @RequestBody User user,
-                                              BindingResult bindingResult) {
-        if (bindingResult.hasErrors()) {
-            String error = getErrorsFromBindingResult(bindingResult);
+                                              BindingResult bindingResult,
+                                              Long expectedVersion) {
+        boolean keepPassword = isBlank(user.getPassword());
+        String error = getErrorsFromBindingResult(bindingResult, keepPassword);
+        if (!error.isEmpty()) {
             return new ResponseEntity<>(new ExceptionInfo(error), HttpStatus.BAD_REQUEST);
         }
+        if (usernameRegistry.isTaken(user.getUsername(), id)) {
+            throw new UserUsernameExistException(USERNAME_EXISTS);
+        }
+        String hash = keepPassword ? null : passwordEncoder.encode(user.getPassword());
         try {
-            String oldPassword = getById(id).getPassword();
-            if (oldPassword.equals(user.getPassword())) {
-                user.setPassword(oldPassword);
-                update(user);
-            } else {
-                save(user);
+            return transactionTemplate.execute(status -> {
+                User existing = getById(id);
+                if (existing == null) {
+                    return new ResponseEntity<>(new ExceptionInfo("User not found"), HttpStatus.NOT_FOUND);
+                }
+                if (isStale(existing, expectedVersion)) {
+                    return new ResponseEntity<>(new ExceptionInfo("User was modified"),
+                            HttpStatus.PRECONDITION_FAILED);
+                }
+                Map<String, Object> before = AuditLog.snapshot(existing);
+                existing.setUsername(user.getUsername());
+                existing.setName(user.getName());
+                existing.setSurname(user.getSurname());
+                existing.setAge(user.getAge());
+                existing.setEmail(user.getEmail());
+                if (hash != null) {
+                    existing.setPassword(hash);
+                }
+                applyRoles(existing, user.getRoles());
+                update(existing, before, hash != null);
+                userDAO.flush();
+                return new ResponseEntity<>(HttpStatus.OK);
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw usernameConflictOr(e, user.getUsername(), id);
+        }
+    }
+
+    /**
+     * Builds and validates the patched user from a snapshot outside the
+     * transaction, hashing a new password there too. The transaction then
+     * reloads the user, checks its version and applies only the fields the
+     * patch named.
+     */
+    @Override
+    public ResponseEntity<ExceptionInfo> patch(long id, JsonNode patch, Long expectedVersion) {
+        if (patch == null || !patch.isObject()) {
+            return new ResponseEntity<>(new ExceptionInfo("Patch document must be a JSON object"),
+                    HttpStatus.BAD_REQUEST);
+        }
+        User snapshot = readOnlyTransaction.execute(status -> {
+            User user = getById(id);
+            if (user != null) {
+                Hibernate.initialize(user.getRoles());
             }
-            return new ResponseEntity<>(HttpStatus.OK);
-        } catch (UserUsernameExistException u) {
-            throw new UserUsernameExistException("User with username exist");
+            return user;
+        });
+        if (snapshot == null) {
+            return new ResponseEntity<>(new ExceptionInfo("User not found"), HttpStatus.NOT_FOUND);
+        }
+        if (isStale(snapshot, expectedVersion)) {
+            return new ResponseEntity<>(new ExceptionInfo("User was modified"), HttpStatus.PRECONDITION_FAILED);
+        }
+        User candidate = new User(snapshot.getName(), snapshot.getSurname(), snapshot.getAge(),
+                snapshot.getEmail(), snapshot.getUsername(), snapshot.getPassword(),
+                new HashSet<>(snapshot.getRoles()));
+        Set<String> patched = new HashSet<>();
+        String rawPassword = null;
+        Iterator<Map.Entry<String, JsonNode>> fields = patch.fields();
+        while (fields.hasNext()) {
+            Map.Entry<String, JsonNode> field = fields.next();
+            JsonNode value = field.getValue();
+            try {
+                switch (field.getKey()) {
+                    case "name":
+                        candidate.setName(textOrNull(value));
+                        break;
+                    case "surname":
+                        candidate.setSurname(textOrNull(value));
+                        break;
+                    case "age":
+                        if (value.isNull()) {
+                            return new ResponseEntity<>(new ExceptionInfo("Field cannot be null: age"),
+                                    HttpStatus.BAD_REQUEST);
+                        }
+                        candidate.setAge(objectMapper.convertValue(value, Byte.class));
+                        break;
+                    case "email":
+                        candidate.setEmail(textOrNull(value));
+                        break;
+                    case "username":
+                        candidate.setUsername(textOrNull(value));
+                        break;
+                    case "password":
+                        if (isBlank(textOrNull(value))) {
+                            continue;
+                        }
+                        rawPassword = value.asText();
+                        candidate.setPassword(rawPassword);
+                        break;
+                    case "roles":
+                        candidate.setRoles(value.isNull() ? new HashSet<>()
+                                : objectMapper.convertValue(value, new TypeReference<Set<Role>>() { }));
+                        break;
+                    default:
+                        return new ResponseEntity<>(new ExceptionInfo("Unknown field: " + field.getKey()),
+                                HttpStatus.BAD_REQUEST);
+                }
+                patched.add(field.getKey());
+            } catch (IllegalArgumentException e) {
+                return new ResponseEntity<>(new ExceptionInfo("Invalid value for field: " + field.getKey()),
+                        HttpStatus.BAD_REQUEST);
+            }
+        }
+        String error = validator.validate(candidate).stream()
+                .map(ConstraintViolation::getMessage)
+                .collect(Collectors.joining("; "));
+        if (!error.isEmpty()) {
+            return new ResponseEntity<>(new ExceptionInfo(error), HttpStatus.BAD_REQUEST);
+        }
+        if (isRenamedToTaken(snapshot, candidate.getUsername())) {
+            throw new UserUsernameExistException(USERNAME_EXISTS);
+        }
+        if (rawPassword != null) {
+            candidate.setPassword(passwordEncoder.encode(rawPassword));
+        }
+        try {
+            return transactionTemplate.execute(status -> {
+                User existing = getById(id);
+                if (existing == null) {
+                    return new ResponseEntity<>(new ExceptionInfo("User not found"), HttpStatus.NOT_FOUND);
+                }
+                if (isStale(existing, expectedVersion)) {
+                    return new ResponseEntity<>(new ExceptionInfo("User was modified"),
+                            HttpStatus.PRECONDITION_FAILED);
+                }
+                Map<String, Object> before = AuditLog.snapshot(existing);
+                applyPatched(existing, candidate, patched);
+                update(existing, before, patched.contains("password"));
+                userDAO.flush();
+                return new ResponseEntity<>(HttpStatus.OK);
+            });
+        } catch (DataIntegrityViolationException e) {
+            throw usernameConflictOr(e, candidate.getUsername(), id);
+        }
+    }
+
+    private void applyPatched(User existing, User candidate, Set<String> patched) {
+        if (patched.contains("name")) {
+            existing.setName(candidate.getName());
+        }
+        if (patched.contains("surname")) {
+            existing.setSurname(candidate.getSurname());
+        }
+        if (patched.contains("age")) {
+            existing.setAge(candidate.getAge());
+        }
+        if (patched.contains("email")) {
+            existing.setEmail(candidate.getEmail());
+        }
+        if (patched.contains("username")) {
+            existing.setUsername(candidate.getUsername());
+        }
+        if (patched.contains("password")) {
+            existing.setPassword(candidate.getPassword());
+        }
+        if (patched.contains("roles")) {
+            applyRoles(existing, candidate.getRoles());
         }
     }
 
@@ -115,10 +409,50 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public String getErrorsFromBindingResult(BindingResult bindingResult) {
+        return getErrorsFromBindingResult(bindingResult, false);
+    }
+
+    private String getErrorsFromBindingResult(BindingResult bindingResult, boolean skipPassword) {
         return bindingResult.getFieldErrors()
                 .stream()
+                .filter(error -> !(skipPassword && "password".equals(error.getField())))
                 .map(DefaultMessageSourceResolvable::getDefaultMessage)
                 .collect(Collectors.joining("; "));
     }
+
+    private void applyRoles(User user, Set<Role> requested) {
+        Set<Role> resolved = roleService.resolveRoles(requested);
+        if (user.getRoles() == null) {
+            user.setRoles(resolved);
+            return;
+        }
+        user.getRoles().retainAll(resolved);
+        user.getRoles().addAll(resolved);
+    }
+
+    private boolean isRenamedToTaken(User existing, String username) {
+        return !Objects.equals(existing.getUsername(), username)
+                && usernameRegistry.isTaken(username, existing.getUserId());
+    }
+
+    private DataIntegrityViolationException usernameConflictOr(DataIntegrityViolationException e,
+                                                               String username, Long userId) {
+        if (e instanceof UserUsernameExistException || usernameRegistry.isTaken(username, userId)) {
+            return new UserUsernameExistException(USERNAME_EXISTS);
+        }
+        return e;
+    }
+
+    private static String textOrNull(JsonNode value) {
+        return value.isNull() ? null : value.asText();
+    }
+
+    private static boolean isStale(User existing, Long expectedVersion) {
+        return expectedVersion != null && existing.getVersion() != expectedVersion;
+    }
+
+    private static boolean isBlank(String value) {
+        return value == null || value.trim().isEmpty();
+    }
 }
 
@@ -0,0 +1,313 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import ru.kata.spring.boot_security.demo.dto.UserSearchHit;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Substring index over username, name, surname and email. Every user gets
+ * an int slot; each trigram maps to a sorted int[] of slots. Fields are
+ * indexed with a start marker, so two-character queries match field
+ * prefixes and longer queries match anywhere. Candidates from the
+ * postings intersection are confirmed against the stored lower-case text.
+ * Not thread-safe.
+ */
+public class UserTrigramIndex {
+
+    private static final char FIELD_START = '\u0001';
+    private static final char FIELD_SEPARATOR = '\n';
+
+    private final Map<Long, Postings> postings = new HashMap<>();
+    private final LongIntMap slotByUserId = new LongIntMap();
+    private UserSearchHit[] hits = new UserSearchHit[1024];
+    private String[] texts = new String[1024];
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+    private int nextSlot;
+    private int size;
+
+    public void put(UserSearchHit hit) {
+        remove(hit.getUserId());
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot++;
+        if (slot == hits.length) {
+            hits = Arrays.copyOf(hits, slot * 2);
+            texts = Arrays.copyOf(texts, slot * 2);
+        }
+        String text = normalize(hit.getUsername()) + FIELD_SEPARATOR + normalize(hit.getName())
+                + FIELD_SEPARATOR + normalize(hit.getSurname()) + FIELD_SEPARATOR + normalize(hit.getEmail());
+        hits[slot] = hit;
+        texts[slot] = text;
+        slotByUserId.put(hit.getUserId(), slot);
+        for (long trigram : documentTrigrams(text)) {
+            postings.computeIfAbsent(trigram, key -> new Postings()).add(slot);
+        }
+        size++;
+    }
+
+    public boolean remove(long userId) {
+        int slot = slotByUserId.remove(userId);
+        if (slot < 0) {
+            return false;
+        }
+        for (long trigram : documentTrigrams(texts[slot])) {
+            Postings list = postings.get(trigram);
+            if (list != null && list.remove(slot) && list.size == 0) {
+                postings.remove(trigram);
+            }
+        }
+        hits[slot] = null;
+        texts[slot] = null;
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        size--;
+        return true;
+    }
+
+    public List<UserSearchHit> search(String query, int limit) {
+        String q = normalize(query);
+        List<UserSearchHit> result = new ArrayList<>(Math.min(limit, 64));
+        if (q.length() < 2 || limit <= 0) {
+            return result;
+        }
+        Postings[] lists = queryPostings(q);
+        if (lists == null) {
+            return result;
+        }
+        Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+        Postings smallest = lists[0];
+        int[] cursors = new int[lists.length];
+        candidates:
+        for (int i = 0; i < smallest.size && result.size() < limit; i++) {
+            int slot = smallest.slots[i];
+            for (int l = 1; l < lists.length; l++) {
+                int found = lists[l].seek(slot, cursors[l]);
+                if (found < 0) {
+                    cursors[l] = -found - 1;
+                    continue candidates;
+                }
+                cursors[l] = found;
+            }
+            if (matches(texts[slot], q)) {
+                result.add(hits[slot]);
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int trigramCount() {
+        return postings.size();
+    }
+
+    public long estimatedBytes() {
+        long bytes = 8L * (hits.length + texts.length) + 12L * slotByUserId.capacity() + 4L * freeSlots.length;
+        for (int slot = 0; slot < nextSlot; slot++) {
+            if (hits[slot] != null) {
+                UserSearchHit hit = hits[slot];
+                bytes += 32 + stringBytes(texts[slot]) + stringBytes(hit.getUsername()) + stringBytes(hit.getName())
+                        + stringBytes(hit.getSurname()) + stringBytes(hit.getEmail());
+            }
+        }
+        for (Postings list : postings.values()) {
+            bytes += 64 + 4L * list.slots.length;
+        }
+        return bytes;
+    }
+
+    private static long stringBytes(String value) {
+        return value == null ? 0 : 40 + value.length();
+    }
+
+    private Postings[] queryPostings(String q) {
+        Set<Long> trigrams = new LinkedHashSet<>();
+        if (q.length() == 2) {
+            trigrams.add(trigram(FIELD_START, q.charAt(0), q.charAt(1)));
+        } else {
+            for (int i = 0; i + 2 < q.length(); i++) {
+                trigrams.add(trigram(q.charAt(i), q.charAt(i + 1), q.charAt(i + 2)));
+            }
+        }
+        Postings[] lists = new Postings[trigrams.size()];
+        int i = 0;
+        for (long trigram : trigrams) {
+            Postings list = postings.get(trigram);
+            if (list == null) {
+                return null;
+            }
+            lists[i++] = list;
+        }
+        return lists;
+    }
+
+    private static boolean matches(String text, String q) {
+        if (q.length() > 2) {
+            return text.contains(q);
+        }
+        return text.startsWith(q) || text.contains(FIELD_SEPARATOR + q);
+    }
+
+    private static long[] documentTrigrams(String text) {
+        long[] trigrams = new long[text.length()];
+        int count = 0;
+        int fieldStart = 0;
+        while (fieldStart <= text.length()) {
+            int fieldEnd = text.indexOf(FIELD_SEPARATOR, fieldStart);
+            if (fieldEnd < 0) {
+                fieldEnd = text.length();
+            }
+            char a = FIELD_START;
+            char b = fieldStart < fieldEnd ? text.charAt(fieldStart) : 0;
+            for (int i = fieldStart + 1; i < fieldEnd; i++) {
+                char c = text.charAt(i);
+                trigrams[count++] = trigram(a, b, c);
+                a = b;
+                b = c;
+            }
+            fieldStart = fieldEnd + 1;
+        }
+        Arrays.sort(trigrams, 0, count);
+        int unique = 0;
+        for (int i = 0; i < count; i++) {
+            if (unique == 0 || trigrams[unique - 1] != trigrams[i]) {
+                trigrams[unique++] = trigrams[i];
+            }
+        }
+        return Arrays.copyOf(trigrams, unique);
+    }
+
+    private static long trigram(char a, char b, char c) {
+        return ((long) a << 32) | ((long) b << 16) | c;
+    }
+
+    private static String normalize(String value) {
+        return value == null ? "" : value.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Postings {
+
+        private int[] slots = new int[4];
+        private int size;
+
+        void add(int slot) {
+            int index = Arrays.binarySearch(slots, 0, size, slot);
+            if (index >= 0) {
+                return;
+            }
+            index = -index - 1;
+            if (size == slots.length) {
+                slots = Arrays.copyOf(slots, size + (size >> 1) + 1);
+            }
+            System.arraycopy(slots, index, slots, index + 1, size - index);
+            slots[index] = slot;
+            size++;
+        }
+
+        boolean remove(int slot) {
+            int index = Arrays.binarySearch(slots, 0, size, slot);
+            if (index < 0) {
+                return false;
+            }
+            System.arraycopy(slots, index + 1, slots, index, size - index - 1);
+            size--;
+            if (size > 4 && size < slots.length / 4) {
+                slots = Arrays.copyOf(slots, slots.length / 2);
+            }
+            return true;
+        }
+
+        int seek(int slot, int from) {
+            return Arrays.binarySearch(slots, Math.min(from, size), size, slot);
+        }
+    }
+
+    static final class LongIntMap {
+
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] keys = newKeys(1024);
+        private int[] values = new int[1024];
+        private int size;
+
+        private static long[] newKeys(int capacity) {
+            long[] keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            return keys;
+        }
+
+        int capacity() {
+            return keys.length;
+        }
+
+        void put(long key, int value) {
+            if ((size + 1) * 2 > keys.length) {
+                resize(keys.length * 2);
+            }
+            int index = indexOf(key);
+            if (keys[index] == EMPTY) {
+                keys[index] = key;
+                size++;
+            }
+            values[index] = value;
+        }
+
+        int remove(long key) {
+            int index = indexOf(key);
+            if (keys[index] == EMPTY) {
+                return -1;
+            }
+            int value = values[index];
+            keys[index] = EMPTY;
+            size--;
+            int mask = keys.length - 1;
+            for (int next = (index + 1) & mask; keys[next] != EMPTY; next = (next + 1) & mask) {
+                long moved = keys[next];
+                int movedValue = values[next];
+                keys[next] = EMPTY;
+                int target = indexOf(moved);
+                keys[target] = moved;
+                values[target] = movedValue;
+            }
+            return value;
+        }
+
+        private int indexOf(long key) {
+            int mask = keys.length - 1;
+            int index = (int) (mix(key) & mask);
+            while (keys[index] != EMPTY && keys[index] != key) {
+                index = (index + 1) & mask;
+            }
+            return index;
+        }
+
+        private void resize(int capacity) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = newKeys(capacity);
+            values = new int[capacity];
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) {
+                    int index = indexOf(oldKeys[i]);
+                    keys[index] = oldKeys[i];
+                    values[index] = oldValues[i];
+                }
+            }
+        }
+
+        private static long mix(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return h ^ (h >>> 32);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+
+import javax.annotation.PreDestroy;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+@Component
+public class UsernameRegistry {
+
+    private final UserDAO userDAO;
+    private final TransactionTemplate readOnlyTransaction;
+    private final long minCapacity;
+    private final double falsePositiveRate;
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "username-filter-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicLong added = new AtomicLong();
+    private final AtomicLong removed = new AtomicLong();
+    private final Counter absent;
+    private final Counter confirmed;
+    private final Counter falsePositive;
+    private volatile UsernameBloomFilter filter;
+    private volatile Queue<String> addedDuringBuild;
+
+    public UsernameRegistry(UserDAO userDAO, PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${app.username-filter.min-capacity:100000}") long minCapacity,
+                            @Value("${app.username-filter.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.userDAO = userDAO;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+        this.minCapacity = minCapacity;
+        this.falsePositiveRate = falsePositiveRate;
+        this.absent = lookupCounter(meterRegistry, "absent");
+        this.confirmed = lookupCounter(meterRegistry, "confirmed");
+        this.falsePositive = lookupCounter(meterRegistry, "false_positive");
+        Gauge.builder("username.filter.changes", added, AtomicLong::get).tag("kind", "added")
+                .register(meterRegistry);
+        Gauge.builder("username.filter.changes", removed, AtomicLong::get).tag("kind", "removed")
+                .register(meterRegistry);
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result) {
+        return Counter.builder("username.filter.lookups")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    public boolean isTaken(String username, Long exceptUserId) {
+        if (username == null) {
+            return false;
+        }
+        UsernameBloomFilter current = filter;
+        if (current != null && !current.mightContain(username)) {
+            absent.increment();
+            return false;
+        }
+        boolean taken = userDAO.findUserIdsByUsername(username).stream()
+                .anyMatch(id -> !id.equals(exceptUserId));
+        if (current != null) {
+            (taken ? confirmed : falsePositive).increment();
+        }
+        return taken;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        Queue<String> pending = new ConcurrentLinkedQueue<>();
+        addedDuringBuild = pending;
+        long addedBefore = added.get();
+        long removedBefore = removed.get();
+        try {
+            long users = readOnlyTransaction.execute(status -> userDAO.count());
+            UsernameBloomFilter fresh = new UsernameBloomFilter(Math.max(minCapacity, users * 2), falsePositiveRate);
+            long loaded = readOnlyTransaction.execute(status -> {
+                try (Stream<String> usernames = userDAO.streamUsernames()) {
+                    return usernames.mapToLong(username -> {
+                        fresh.add(username);
+                        return 1;
+                    }).sum();
+                }
+            });
+            filter = fresh;
+            pending.forEach(fresh::add);
+            added.addAndGet(loaded - addedBefore);
+            removed.addAndGet(-removedBefore);
+        } finally {
+            addedDuringBuild = null;
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserChanged(UserChangedEvent event) {
+        if (event.getUsername() == null) {
+            return;
+        }
+        if (event.getType() == UserChangedEvent.Type.DELETED) {
+            removed.incrementAndGet();
+        } else {
+            Queue<String> pending = addedDuringBuild;
+            if (pending != null) {
+                pending.add(event.getUsername());
+            }
+            UsernameBloomFilter current = filter;
+            if (current != null) {
+                current.add(event.getUsername());
+            }
+            boolean renamed = event.getPreviousUsername() != null
+                    && !event.getPreviousUsername().equalsIgnoreCase(event.getUsername());
+            if (renamed) {
+                removed.incrementAndGet();
+            }
+            if (event.getType() == UserChangedEvent.Type.CREATED || renamed) {
+                added.incrementAndGet();
+            }
+        }
+        UsernameBloomFilter current = filter;
+        if (current != null && (added.get() > current.getCapacity() || removed.get() > current.getCapacity() / 2)
+                && rebuilding.compareAndSet(false, true)) {
+            rebuilder.execute(() -> {
+                try {
+                    rebuild();
+                } finally {
+                    rebuilding.set(false);
+                }
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+}
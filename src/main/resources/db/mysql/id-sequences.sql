@@ -0,0 +1,27 @@
+-- user and role ids moved from AUTO_INCREMENT to Hibernate's pooled sequence
+-- generator, which MySQL emulates with single-row user_seq/role_seq tables.
+-- Keep each sequence ahead of the ids already in use so that a freshly created
+-- sequence never hands out an existing id. The offsets are allocationSize + 1.
+CREATE TABLE IF NOT EXISTS user_seq (next_val BIGINT);
+INSERT INTO user_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM user_seq);
+UPDATE user_seq SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(user_id), 0) + 51 FROM user));
+
+CREATE TABLE IF NOT EXISTS role_seq (next_val BIGINT);
+INSERT INTO role_seq (next_val) SELECT 1 FROM DUAL WHERE NOT EXISTS (SELECT * FROM role_seq);
+UPDATE role_seq SET next_val = GREATEST(next_val, (SELECT COALESCE(MAX(id), 0) + 11 FROM role));
+
+-- Older builds inserted ROLE_USER and ROLE_ADMIN on every boot. Move every
+-- grant onto the lowest id per role name, drop the duplicates and add the
+-- unique key that keeps nodes starting together from seeding a role twice.
+INSERT IGNORE INTO users_roles (user_id, roles_id)
+SELECT ur.user_id, k.keep_id FROM users_roles ur JOIN role r ON r.id = ur.roles_id
+JOIN (SELECT role, MIN(id) AS keep_id FROM role GROUP BY role) k ON k.role = r.role WHERE ur.roles_id <> k.keep_id;
+DELETE ur FROM users_roles ur JOIN role r ON r.id = ur.roles_id
+JOIN (SELECT role, MIN(id) AS keep_id FROM role GROUP BY role) k ON k.role = r.role WHERE ur.roles_id <> k.keep_id;
+DELETE r FROM role r
+JOIN (SELECT role, MIN(id) AS keep_id FROM role GROUP BY role) k ON k.role = r.role WHERE r.id <> k.keep_id;
+SET @role_unique_key = (SELECT IF(COUNT(*) = 0, 'ALTER TABLE role ADD CONSTRAINT uk_role_role UNIQUE (role)', 'DO 0')
+FROM information_schema.statistics WHERE table_schema = DATABASE() AND table_name = 'role' AND index_name = 'uk_role_role');
+PREPARE role_unique_key FROM @role_unique_key;
+EXECUTE role_unique_key;
+DEALLOCATE PREPARE role_unique_key;
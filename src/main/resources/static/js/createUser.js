@@ -29,7 +29,7 @@ async function createUser() {
 
         const response = await userFetch.addNewUser(data);
         if (response.ok) {
-            await getUsers();
+            if (!liveUpdates) await getUsers();
             addUserForm.find('#usernameCreate').val('');
             addUserForm.find('#passwordCreate').val('');
             addUserForm.find('#nameCreate').val('');
@@ -48,7 +48,7 @@ async function deleteUser(modal, id) {
                  <div class="form-group">
                 <label for="roles" class="com-form-label">Role:</label>
                 <select id="roles" class="form-control select" size="2" name="roles" style="max-height: 100px" disabled>
-                <option>${user.roles.map(role => " " + role.role.substr(5))}</option>
+                <option>${user.roles.map(role => " " + role.substr(5))}</option>
             })}</option>
                 </select>
             </div>
@@ -62,7 +62,7 @@ async function deleteUser(modal, id) {
         const response = await userFetch.deleteUser(id);
 
         if (response.ok) {
-            await getUsers();
+            if (!liveUpdates) await getUsers();
             modal.modal('hide');
         } else {
             let body = await response.json();
@@ -1,5 +1,6 @@
 async function editUser(modal, id) {
     let oneUser = await userFetch.findOneUser(id);
+    let etag = oneUser.headers.get('ETag');
     let user = oneUser.json();
 
     modal.find('.modal-title').html('Edit user');
@@ -24,7 +25,8 @@ async function editUser(modal, id) {
 
                 <div class="form-group">
                     <label for="password" class="com-form-label">Password</label>
-                    <input type="password" class="form-control" id="password" value="${user.password}">
+                    <input type="password" class="form-control" id="password" value=""
+                           placeholder="Leave blank to keep current">
                 </div>
 
                 <div class="form-group">
@@ -50,8 +52,7 @@ async function editUser(modal, id) {
                 <div class="form-group">
                     <label for="roles" class="com-form-label">Role</label>
                     <select multiple id="roles" size="2" class="form-control" style="max-height: 100px">
-                    <option value="ROLE_USER">USER</option>
-                    <option value="ROLE_ADMIN">ADMIN</option>
+                    ${roleOptions(user.roles)}
                     </select>
                 </div>
             </form>
@@ -70,28 +71,28 @@ async function editUser(modal, id) {
             }
             return array;
         }
-        let userId = modal.find("#userId").val().trim();
+        let original = await user;
         let username = modal.find("#username").val().trim();
         let password = modal.find("#password").val().trim();
         let name = modal.find("#name").val().trim();
         let surname = modal.find("#surname").val().trim();
         let age = modal.find("#age").val().trim();
         let email = modal.find("#email").val().trim();
-        let data = {
-            userId: userId,
-            username: username,
-            password: password,
-            name: name,
-            surname: surname,
-            age: age,
-            email: email,
-            roles: checkedRoles()
+        let roles = checkedRoles();
+        let data = {}
+        if (username !== original.username) data.username = username;
+        if (password !== '') data.password = password;
+        if (name !== original.name) data.name = name;
+        if (surname !== original.surname) data.surname = surname;
+        if (Number(age) !== original.age) data.age = age;
+        if (email !== original.email) data.email = email;
+        let roleNames = list => list.slice().sort().join();
+        if (roleNames(roles.map(role => role.role)) !== roleNames(original.roles)) data.roles = roles;
 
-        }
-        const response = await userFetch.updateUser(data, id);
+        const response = await userFetch.patchUser(data, id, etag);
 
         if (response.ok) {
-            await getUsers();
+            if (!liveUpdates) await getUsers();
             modal.modal('hide');
         } else {
             let body = await response.json();
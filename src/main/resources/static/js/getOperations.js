@@ -12,7 +12,7 @@ async function getUser() {
                     <td>${user.surname}</td>
                     <td>${user.age}</td>
                     <td>${user.email}</td>
-                    <td>${user.roles.map(e => " " + e.role.substr(5))}</td>
+                    <td>${user.roles.map(e => " " + e.substr(5))}</td>
                 </tr>
             `;
             table.innerHTML = temp;
@@ -20,7 +20,7 @@ async function getUser() {
             $(function (){
                 let role = ""
             for (let i = 0; i < user.roles.length; i++) {
-                role = user.roles[i].role
+                role = user.roles[i]
                 if (role === "ROLE_ADMIN") {
                     isUser = false;
                 }
@@ -53,21 +53,38 @@ async function tittle() {
 }
 
 async function getUsers() {
+    const table = document.querySelector('#tableAllUsers tbody');
+    table.innerHTML = '';
+    nextCursor = null;
+    await loadUsersPage();
+}
+
+async function loadUsersPage() {
     let temp = '';
     const table = document.querySelector('#tableAllUsers tbody');
-    await userFetch.findAllUsers()
+    await userFetch.findUsersPage(nextCursor)
         .then(res => res.json())
-        .then(users => {
-            users.forEach(user => {
-                temp += `
-                <tr>
+        .then(page => {
+            page.users.forEach(user => {
+                temp += userRow(user);
+            })
+            table.insertAdjacentHTML('beforeend', temp);
+            nextCursor = page.nextCursor;
+        })
+
+    $("#loadMoreUsers").toggle(nextCursor !== null);
+}
+
+function userRow(user) {
+    return `
+                <tr data-userid="${user.userId}">
                     <td>${user.userId}</td>
                     <td>${user.username}</td>
                     <td>${user.name}</td>
                     <td>${user.surname}</td>
                     <td>${user.age}</td>
                     <td>${user.email}</td>
-                    <td>${user.roles.map(e => " " + e.role.substr(5))}</td>
+                    <td>${user.roles.map(e => " " + e.substr(5))}</td>
                     <td>
                         <button type="button" data-userid="${user.userId}" data-action="edit" class="btn btn-info"
                             className data-toggle="modal" data-target="#editModal">Edit</button>
@@ -78,12 +95,10 @@ async function getUsers() {
                     </td>
                 </tr>
                `;
-            })
-            table.innerHTML = temp;
-
-        })
+}
 
-    $("#tableAllUsers").find('button').on('click', (event) => {
+async function getUserButtons() {
+    $("#tableAllUsers").on('click', 'button', (event) => {
         let defaultModal = $('#defaultModal');
 
         let targetButton = $(event.target);
@@ -96,6 +111,51 @@ async function getUsers() {
     })
 }
 
+async function applyUserDelta(delta) {
+    const table = document.querySelector('#tableAllUsers tbody');
+    const row = table.querySelector(`tr[data-userid="${delta.userId}"]`);
+    if (delta.type === 'DELETED') {
+        if (row) row.remove();
+        return;
+    }
+    let user = delta.user;
+    if (!user) {
+        if (!row && nextCursor !== null) return;
+        const response = await userFetch.findOneUser(delta.userId);
+        if (!response.ok) return;
+        user = await response.json();
+    }
+    if (row) {
+        row.outerHTML = userRow(user);
+    } else if (nextCursor === null) {
+        table.insertAdjacentHTML('beforeend', userRow(user));
+    }
+}
+
+async function subscribeUserEvents() {
+    if (isUser || !window.EventSource) return;
+    const source = new EventSource('api/users/events'
+        + (apiToken ? `?access_token=${encodeURIComponent(apiToken.accessToken)}` : ''));
+    ['created', 'updated', 'deleted'].forEach(name =>
+        source.addEventListener(name, event => applyUserDelta(JSON.parse(event.data))));
+    source.addEventListener('reset', () => getUsers());
+    source.onopen = () => liveUpdates = true;
+    source.onerror = async () => {
+        liveUpdates = false;
+        if (apiToken && source.readyState === EventSource.CLOSED) {
+            await refreshApiToken();
+            await getUsers();
+            await subscribeUserEvents();
+        }
+    };
+}
+
+async function getLoadMoreButton() {
+    $('#loadMoreUsers').on('click', async () => {
+        await loadUsersPage();
+    })
+}
+
 async function getNewUserForm() {
     let button = $(`#addUser`);
     let form = $(`#addForm`)
@@ -1,14 +1,20 @@
-let roleList = [
-    {id: 1, role: "ROLE_USER"},
-    {id: 2, role: "ROLE_ADMIN"}
-]
+let roleList = []
 let isUser = true;
+let pageSize = 50;
+let nextCursor = null;
+let liveUpdates = false;
+let apiToken = null;
 
 $(async function () {
+    await getApiToken();
+    await getRoles();
     await getUser();
     await infoUser();
     await tittle();
     await getUsers();
+    await getUserButtons();
+    await subscribeUserEvents();
+    await getLoadMoreButton();
     await getNewUserForm();
     await getDefaultModal();
     await createUser();
@@ -21,12 +27,41 @@ const userFetch = {
         'Content-Type': 'application/json',
         'Referer': null
     },
-    findAllUsers: async () => await fetch('api/users'),
-    findUserByUsername: async () => await fetch(`api/user`),
-    findOneUser: async (id) => await fetch(`api/users/${id}`),
-    addNewUser: async (user) => await fetch('api/users', {method: 'POST', headers: userFetch.head, body: JSON.stringify(user)}),
-    updateUser: async (user, id) => await fetch(`api/users/${id}`, {method: 'PUT', headers: userFetch.head, body: JSON.stringify(user)}),
-    deleteUser: async (id) => await fetch(`api/users/${id}`, {method: 'DELETE', headers: userFetch.head})
+    findUsersPage: async (after) => await apiFetch(`api/users?limit=${pageSize}` + (after ? `&after=${after}` : '')),
+    findUserByUsername: async () => await apiFetch(`api/user`),
+    findAllRoles: async () => await apiFetch('api/roles'),
+    findOneUser: async (id) => await apiFetch(`api/users/${id}`),
+    addNewUser: async (user) => await apiFetch('api/users', {method: 'POST', headers: userFetch.head, body: JSON.stringify(user)}),
+    updateUser: async (user, id) => await apiFetch(`api/users/${id}`, {method: 'PUT', headers: userFetch.head, body: JSON.stringify(user)}),
+    patchUser: async (changes, id, etag) => await apiFetch(`api/users/${id}`, {method: 'PATCH', headers: {...userFetch.head, 'Content-Type': 'application/merge-patch+json', ...(etag ? {'If-Match': etag} : {})}, body: JSON.stringify(changes)}),
+    deleteUser: async (id) => await apiFetch(`api/users/${id}`, {method: 'DELETE', headers: userFetch.head})
+}
+
+async function getApiToken() {
+    const response = await fetch('auth/token', {method: 'POST', headers: {'Accept': 'application/json'}});
+    apiToken = response.ok ? await response.json() : null;
+}
+
+async function refreshApiToken() {
+    const response = await fetch('api/auth/refresh', {method: 'POST', headers: userFetch.head,
+        body: JSON.stringify({refreshToken: apiToken.refreshToken})});
+    if (response.ok) {
+        apiToken = await response.json();
+    } else {
+        await getApiToken();
+    }
+}
+
+async function apiFetch(url, options = {}) {
+    if (!apiToken) return fetch(url, options);
+    const withToken = () => fetch(url, {...options,
+        headers: {...(options.headers || {}), 'Authorization': `Bearer ${apiToken.accessToken}`}});
+    let response = await withToken();
+    if (response.status === 401) {
+        await refreshApiToken();
+        if (apiToken) response = await withToken();
+    }
+    return response;
 }
 
 async function infoUser() {
@@ -37,11 +72,24 @@ async function infoUser() {
         .then(user => {
             temp += `
              <span style="color: white">
-               ${user.username} with roles <span>${user.roles.map(e => " " + e.role.substr(5))}</span>
+               ${user.username} with roles <span>${user.roles.map(e => " " + e.substr(5))}</span>
                 </div>
             </span>
                 </tr>
             `;
         });
     info.innerHTML = temp;
-}
\ No newline at end of file
+}
+
+async function getRoles() {
+    await userFetch.findAllRoles()
+        .then(res => res.json())
+        .then(roles => {
+            roleList = roles;
+            $('#rolesCreate').html(roleOptions());
+        });
+}
+
+function roleOptions(selected = []) {
+    return roleList.map(role => `<option value="${role.role}" ${selected.includes(role.role) ? 'selected' : ''}>${role.role.substr(5)}</option>`).join('');
+}
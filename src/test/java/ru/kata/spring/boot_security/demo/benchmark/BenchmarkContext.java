@@ -0,0 +1,23 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import ru.kata.spring.boot_security.demo.SpringBootSecurityDemoApplication;
+
+import java.util.Arrays;
+
+final class BenchmarkContext {
+
+    private BenchmarkContext() {
+    }
+
+    /**
+     * Starts the application with the given properties passed as command-line
+     * arguments, so they override src/test/resources/application.properties.
+     */
+    static ConfigurableApplicationContext start(String... properties) {
+        return new SpringApplicationBuilder(SpringBootSecurityDemoApplication.class)
+                .properties("server.port=0", "spring.main.banner-mode=off", "logging.level.root=WARN")
+                .run(Arrays.stream(properties).map(property -> "--" + property).toArray(String[]::new));
+    }
+}
@@ -0,0 +1,53 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.BindingResult;
+import org.springframework.validation.beanvalidation.LocalValidatorFactoryBean;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.UserServiceImpl;
+
+import java.util.HashSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Formatting validation errors for the REST error response, for a valid
+ * user and for one that violates every constraint.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BindingResultBenchmark {
+
+    @Param({"valid", "invalid"})
+    public String input;
+
+    private UserServiceImpl userService;
+    private BindingResult bindingResult;
+    private LocalValidatorFactoryBean validator;
+
+    @Setup
+    public void setUp() {
+        validator = new LocalValidatorFactoryBean();
+        validator.afterPropertiesSet();
+        userService = new UserServiceImpl(null, null, null, null, validator, null, null, null, null, false);
+        User user = "valid".equals(input)
+                ? new User("Name", "Surname", (byte) 30, "user@mail.ru", "username", "password", new HashSet<>())
+                : new User("N", "S", (byte) -1, "mail", "", "", new HashSet<>());
+        bindingResult = new BeanPropertyBindingResult(user, "user");
+        validator.validate(user, bindingResult);
+    }
+
+    @TearDown
+    public void tearDown() {
+        validator.close();
+    }
+
+    @Benchmark
+    public String getErrorsFromBindingResult() {
+        return userService.getErrorsFromBindingResult(bindingResult);
+    }
+}
@@ -0,0 +1,132 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.validation.BeanPropertyBindingResult;
+import ru.kata.spring.boot_security.demo.Exception.BulkheadFullException;
+import ru.kata.spring.boot_security.demo.Exception.HashingCapacityExceededException;
+import ru.kata.spring.boot_security.demo.configs.ApiBulkheads;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserExportService;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.io.OutputStream;
+import java.util.Set;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Read latency while writers and an export saturate the API, measured on
+ * the real services against the embedded H2 database. Writes create users,
+ * so they pay for BCrypt and an insert. In "direct" mode every call runs on
+ * its caller thread, as it does on plain Tomcat workers. In "platform" mode
+ * calls go through the read, write and bulk bulkheads, and excess work is
+ * shed. Sample mode reports the read p99/p99.9 for both.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class BulkheadBenchmark {
+
+    private static final int SEEDED_USERS = 200;
+
+    @Param({"direct", "platform"})
+    public String execution;
+
+    @Param({"8"})
+    public int bcryptStrength;
+
+    private ConfigurableApplicationContext context;
+    private ApiBulkheads bulkheads;
+    private UserService userService;
+    private UserExportService userExportService;
+    private Set<Role> roles;
+    private long readId;
+    private final AtomicLong counter = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = BenchmarkContext.start("app.api.execution=" + execution,
+                "app.hashing.bcrypt-strength=" + bcryptStrength);
+        bulkheads = context.getBean(ApiBulkheads.class);
+        userService = context.getBean(UserService.class);
+        userExportService = context.getBean(UserExportService.class);
+        RoleService roleService = context.getBean(RoleService.class);
+        roleService.addDefaultRole();
+        roles = Set.of(roleService.findByName("ROLE_USER"));
+        for (int i = 0; i < SEEDED_USERS; i++) {
+            create();
+        }
+        readId = userService.getDetailByUsername(username(0)).getUserId();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    @Group("saturated")
+    @GroupThreads(1)
+    public Object fastRead() {
+        return shed(() -> bulkheads.read(() -> userService.getDetailById(readId)).join());
+    }
+
+    @Benchmark
+    @Group("saturated")
+    @GroupThreads(8)
+    public Object slowWrite() {
+        return shed(() -> bulkheads.write(this::create).join());
+    }
+
+    @Benchmark
+    @Group("saturated")
+    @GroupThreads(1)
+    public Object export() {
+        return shed(() -> bulkheads.bulk(() -> {
+            userExportService.exportNdjson(OutputStream.nullOutputStream());
+            return Boolean.TRUE;
+        }).join());
+    }
+
+    private Object create() {
+        User user = new User("Name", "Surname", (byte) 30, "user@mail.ru", username(counter.getAndIncrement()),
+                "password", roles);
+        return userService.create(user, new BeanPropertyBindingResult(user, "user"));
+    }
+
+    private static Object shed(Call call) {
+        try {
+            return call.run();
+        } catch (BulkheadFullException | HashingCapacityExceededException e) {
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+            return null;
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof HashingCapacityExceededException) {
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+                return null;
+            }
+            throw e;
+        }
+    }
+
+    private static String username(long n) {
+        StringBuilder name = new StringBuilder("u");
+        do {
+            name.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return name.toString();
+    }
+
+    private interface Call {
+        Object run();
+    }
+}
@@ -0,0 +1,93 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import ru.kata.spring.boot_security.demo.configs.LoginRateLimiter;
+import ru.kata.spring.boot_security.demo.configs.LoginThrottle;
+import ru.kata.spring.boot_security.demo.configs.LoginThrottleFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of the login throttle on the happy path: a POST /login that is
+ * within the per-IP limit and has no failures charged to its username,
+ * spread over many distinct users and addresses. "limiter" is a single bucket lookup and "baseline"
+ * invokes the downstream chain directly. Run with -t to measure stripe
+ * contention.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoginThrottleBenchmark {
+
+    @Param({"10000"})
+    public int users;
+
+    private LoginThrottleFilter filter;
+    private LoginRateLimiter limiter;
+    private final FilterChain chain = (request, response) -> { };
+
+    @Setup
+    public void setUp() {
+        Duration refill = Duration.ofNanos(1000);
+        limiter = new LoginRateLimiter(1_000_000, refill, 100_000, 64);
+        filter = new LoginThrottleFilter("/login", "username", new LoginThrottle(limiter,
+                new LoginRateLimiter(1_000_000, refill, 100_000, 64),
+                new SimpleMeterRegistry()));
+    }
+
+    @State(Scope.Thread)
+    public static class Requests {
+
+        private MockHttpServletRequest[] requests;
+        private MockHttpServletResponse response;
+        private int next;
+
+        @Setup
+        public void setUp(LoginThrottleBenchmark benchmark) {
+            requests = new MockHttpServletRequest[benchmark.users];
+            for (int i = 0; i < requests.length; i++) {
+                MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+                request.setServletPath("/login");
+                request.setRemoteAddr("10.0." + (i >>> 8 & 255) + "." + (i & 255));
+                request.addParameter("username", "user" + i);
+                request.addParameter("password", "password");
+                requests[i] = request;
+            }
+            response = new MockHttpServletResponse();
+        }
+
+        private MockHttpServletRequest next() {
+            MockHttpServletRequest request = requests[next];
+            next = next + 1 == requests.length ? 0 : next + 1;
+            return request;
+        }
+    }
+
+    @Benchmark
+    public Object baseline(Requests requests) throws IOException, ServletException {
+        MockHttpServletRequest request = requests.next();
+        chain.doFilter(request, requests.response);
+        return request;
+    }
+
+    @Benchmark
+    public long limiter(Requests requests) {
+        return limiter.tryAcquire(requests.next().getParameter("username"), System.nanoTime());
+    }
+
+    @Benchmark
+    public int throttled(Requests requests) throws IOException, ServletException {
+        filter.doFilter(requests.next(), requests.response, chain);
+        return requests.response.getStatus();
+    }
+}
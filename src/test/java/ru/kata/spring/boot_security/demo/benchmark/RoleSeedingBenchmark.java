@@ -0,0 +1,58 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Application startup, role seeding included, on a first boot (empty
+ * database) and on a restart (roles and schema_seed already present). Each
+ * measurement is one cold context start on its own H2 file database (an
+ * in-memory one is dropped when the previous context closes), so the
+ * difference between the two scenarios is the seeding stage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class RoleSeedingBenchmark {
+
+    private static final AtomicInteger DATABASES = new AtomicInteger();
+
+    @Param({"firstBoot", "restart"})
+    public String scenario;
+
+    private String url;
+    private ConfigurableApplicationContext context;
+
+    @Setup(Level.Iteration)
+    public void prepareDatabase() {
+        url = "jdbc:h2:file:./target/benchmark/seeding-" + ProcessHandle.current().pid() + "-"
+                + DATABASES.incrementAndGet() + ";MODE=MySQL;DATABASE_TO_LOWER=TRUE;NON_KEYWORDS=USER";
+        if ("restart".equals(scenario)) {
+            start().close();
+        }
+    }
+
+    @TearDown(Level.Iteration)
+    public void stopContext() {
+        if (context != null) {
+            context.close();
+            context = null;
+        }
+    }
+
+    @Benchmark
+    public ConfigurableApplicationContext startup() {
+        context = start();
+        return context;
+    }
+
+    private ConfigurableApplicationContext start() {
+        return BenchmarkContext.start("spring.datasource.url=" + url, "spring.jpa.hibernate.ddl-auto=update");
+    }
+}
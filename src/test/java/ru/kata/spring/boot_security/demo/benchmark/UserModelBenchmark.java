@@ -0,0 +1,70 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-request entity work done by Spring Security and collections:
+ * building the authority list and hashing/comparing users.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserModelBenchmark {
+
+    @Param({"1", "2"})
+    public int roleCount;
+
+    private User user;
+    private User equalUser;
+    private User otherUser;
+    private Set<User> users;
+
+    @Setup
+    public void setUp() {
+        Role userRole = new Role("ROLE_USER");
+        userRole.setId(1L);
+        Role adminRole = new Role("ROLE_ADMIN");
+        adminRole.setId(2L);
+        Set<Role> roles = new HashSet<>(roleCount == 1 ? List.of(userRole) : List.of(userRole, adminRole));
+        String hash = "{bcrypt}$2a$12$wnVzRxYd6Dds5fFGuq9N.u93xrZg2IFbq6JxQJ4FClc1u38HtFNQu";
+        user = new User("Name", "Surname", (byte) 30, "user@mail.ru", "username", hash, roles);
+        equalUser = new User("Name", "Surname", (byte) 30, "user@mail.ru", "username", hash, new HashSet<>(roles));
+        otherUser = new User("Name", "Surname", (byte) 30, "other@mail.ru", "other", hash, roles);
+        users = new HashSet<>();
+        for (int i = 0; i < 1000; i++) {
+            users.add(new User("Name", "Surname", (byte) 30, "user@mail.ru", "user" + i, hash, roles));
+        }
+    }
+
+    @Benchmark
+    public Object getAuthorities() {
+        return user.getAuthorities();
+    }
+
+    @Benchmark
+    public int userHashCode() {
+        return user.hashCode();
+    }
+
+    @Benchmark
+    public void userEquals(Blackhole blackhole) {
+        blackhole.consume(user.equals(equalUser));
+        blackhole.consume(user.equals(otherUser));
+    }
+
+    @Benchmark
+    public boolean hashSetLookup() {
+        return users.contains(equalUser);
+    }
+}
@@ -0,0 +1,88 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import ru.kata.spring.boot_security.demo.dto.UserSearchHit;
+import ru.kata.spring.boot_security.demo.service.UserTrigramIndex;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Trigram index over synthetic users: full build time, query latency for
+ * a selective substring, a common substring and a two-letter prefix, and
+ * the estimated footprint per user (printed after setup).
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 1, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class UserSearchIndexBenchmark {
+
+    private static final String[] NAMES = {"Anna", "Boris", "Diego", "Elena", "Fedor", "Galina", "Ivan",
+            "Maria", "Nikita", "Olga", "Pavel", "Svetlana", "Timur", "Yulia"};
+    private static final String[] SURNAMES = {"Ivanov", "Petrova", "Smirnov", "Kuznetsova", "Popov",
+            "Vasilieva", "Sokolov", "Mikhailova", "Novikov", "Fedorova", "Morozov", "Volkova"};
+
+    @Param({"100000", "1000000"})
+    public int users;
+
+    private UserSearchHit[] rows;
+    private UserTrigramIndex index;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        rows = new UserSearchHit[users];
+        for (int i = 0; i < users; i++) {
+            String username = "user" + Integer.toString(i + 1, 36);
+            rows[i] = new UserSearchHit(i + 1, username, NAMES[random.nextInt(NAMES.length)],
+                    SURNAMES[random.nextInt(SURNAMES.length)], username + "@example.com");
+        }
+        index = build();
+        System.out.printf("%n%d users, %d trigrams, ~%d bytes per user%n",
+                index.size(), index.trigramCount(), index.estimatedBytes() / index.size());
+    }
+
+    private UserTrigramIndex build() {
+        UserTrigramIndex built = new UserTrigramIndex();
+        for (UserSearchHit row : rows) {
+            built.put(row);
+        }
+        return built;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    public UserTrigramIndex buildIndex() {
+        return build();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public List<UserSearchHit> selectiveQuery() {
+        return index.search("userabc", 20);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public List<UserSearchHit> commonQuery() {
+        return index.search("kuznet", 20);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public List<UserSearchHit> twoLetterPrefix() {
+        return index.search("ol", 20);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    public List<UserSearchHit> noMatch() {
+        return index.search("zzqx", 20);
+    }
+}
@@ -0,0 +1,75 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serializing a page of JPA User entities versus UserSummary projections.
+ * Payload size is reported as an auxiliary counter; run with "-prof gc" to
+ * get the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserSerializationBenchmark {
+
+    @Param({"50", "500"})
+    public int pageSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private List<User> entities;
+    private List<UserSummary> summaries;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Payload {
+        public long bytesPerPage;
+    }
+
+    @Setup
+    public void setUp() {
+        Role userRole = new Role("ROLE_USER");
+        userRole.setId(1L);
+        Role adminRole = new Role("ROLE_ADMIN");
+        adminRole.setId(2L);
+        entities = new ArrayList<>(pageSize);
+        summaries = new ArrayList<>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            Set<Role> roles = new HashSet<>(i % 10 == 0 ? List.of(userRole, adminRole) : List.of(userRole));
+            User user = new User("Name", "Surname", (byte) 30, "user" + i + "@mail.ru", "user" + i,
+                    "{bcrypt}$2a$12$wnVzRxYd6Dds5fFGuq9N.u93xrZg2IFbq6JxQJ4FClc1u38HtFNQu", roles);
+            user.setUserId((long) i + 1);
+            entities.add(user);
+            UserSummary summary = new UserSummary(user.getUserId(), user.getUsername(), user.getName(),
+                    user.getSurname(), user.getAge(), user.getEmail());
+            roles.forEach(role -> summary.getRoles().add(role.getRole()));
+            summaries.add(summary);
+        }
+    }
+
+    @Benchmark
+    public byte[] entities(Payload payload) throws Exception {
+        byte[] json = objectMapper.writeValueAsBytes(entities);
+        payload.bytesPerPage = json.length;
+        return json;
+    }
+
+    @Benchmark
+    public byte[] summaries(Payload payload) throws Exception {
+        byte[] json = objectMapper.writeValueAsBytes(summaries);
+        payload.bytesPerPage = json.length;
+        return json;
+    }
+}
@@ -0,0 +1,116 @@
+package ru.kata.spring.boot_security.demo.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.orm.jpa.EntityManagerHolder;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.validation.BeanPropertyBindingResult;
+import ru.kata.spring.boot_security.demo.dto.UserFilter;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.RoleService;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * UserServiceImpl create, edit and find paths against the embedded H2
+ * database (MySQL mode), with and without the second-level cache. BCrypt
+ * runs at strength 4 so the numbers show persistence cost; hashing is
+ * measured separately by BCryptBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserServiceBenchmark {
+
+    private static final int SEEDED_USERS = 1000;
+
+    @Param({"true", "false"})
+    public boolean secondLevelCache;
+
+    private ConfigurableApplicationContext context;
+    private EntityManagerFactory entityManagerFactory;
+    private UserService userService;
+    private Set<Role> roles;
+    private long counter;
+    private long editedId;
+
+    @Setup(Level.Trial)
+    public void startContext() {
+        context = BenchmarkContext.start("app.hashing.bcrypt-strength=4",
+                "app.l2-cache.enabled=" + secondLevelCache);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        userService = context.getBean(UserService.class);
+        RoleService roleService = context.getBean(RoleService.class);
+        roleService.addDefaultRole();
+        roles = Set.of(roleService.findByName("ROLE_USER"));
+        for (int i = 0; i < SEEDED_USERS; i++) {
+            create();
+        }
+        editedId = userService.getDetailByUsername(username(0)).getUserId();
+    }
+
+    @TearDown(Level.Trial)
+    public void stopContext() {
+        context.close();
+    }
+
+    @Benchmark
+    public Object create() {
+        User user = newUser(username(counter++), "password");
+        return userService.create(user, new BeanPropertyBindingResult(user, "user"));
+    }
+
+    @Benchmark
+    public Object edit() {
+        User user = newUser(username(0), "");
+        user.setAge((byte) (counter++ % 100));
+        return inView(() -> userService.edit(editedId, user, new BeanPropertyBindingResult(user, "user"), null));
+    }
+
+    @Benchmark
+    public Object findById() {
+        return inView(() -> userService.getDetailById(editedId));
+    }
+
+    @Benchmark
+    public Object findByUsername() {
+        return inView(() -> userService.getDetailByUsername(username(counter++ % SEEDED_USERS)));
+    }
+
+    @Benchmark
+    public Object findPage() {
+        return inView(() -> userService.findPage(0, 50, UserFilter.none()));
+    }
+
+    private User newUser(String username, String password) {
+        return new User("Name", "Surname", (byte) 30, "user@mail.ru", username, password, roles);
+    }
+
+    private static String username(long n) {
+        StringBuilder name = new StringBuilder("u");
+        do {
+            name.append((char) ('a' + n % 26));
+            n /= 26;
+        } while (n > 0);
+        return name.toString();
+    }
+
+    private <T> T inView(Supplier<T> call) {
+        EntityManagerHolder holder = new EntityManagerHolder(entityManagerFactory.createEntityManager());
+        TransactionSynchronizationManager.bindResource(entityManagerFactory, holder);
+        try {
+            return call.get();
+        } finally {
+            TransactionSynchronizationManager.unbindResource(entityManagerFactory);
+            holder.getEntityManager().close();
+        }
+    }
+}
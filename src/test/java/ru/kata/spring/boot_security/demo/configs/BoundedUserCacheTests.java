@@ -0,0 +1,45 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.junit.jupiter.api.Test;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.time.Duration;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class BoundedUserCacheTests {
+
+    private final BoundedUserCache cache = new BoundedUserCache(100, Duration.ofMinutes(5));
+
+    @Test
+    void loadThatStartedBeforeAnInvalidationIsNotCached() {
+        long stamp = cache.stamp();
+        CachedUserDetails stale = details("{noop}old");
+
+        cache.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, "alice"));
+        cache.putUserInCache(stale, stamp);
+
+        assertNull(cache.getUserFromCache("alice"));
+    }
+
+    @Test
+    void loadAfterTheInvalidationIsCached() {
+        cache.putUserInCache(details("{noop}old"), cache.stamp());
+        cache.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, "alice"));
+        assertNull(cache.getUserFromCache("alice"));
+
+        cache.putUserInCache(details("{noop}new"), cache.stamp());
+        assertEquals("{noop}new", cache.getUserFromCache("alice").getPassword());
+    }
+
+    private static CachedUserDetails details(String password) {
+        User user = new User("Alice", "Surname", (byte) 30, "alice@mail.ru", "alice", password,
+                Set.of(new Role("ROLE_USER")));
+        user.setUserId(1L);
+        return CachedUserDetails.of(user);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LoginRateLimiterTests {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    void refillsOneTokenPerInterval() {
+        LoginRateLimiter limiter = new LoginRateLimiter(2, Duration.ofSeconds(1), 100, 1);
+
+        assertEquals(0, limiter.tryAcquire("a", 0));
+        assertEquals(0, limiter.tryAcquire("a", 0));
+        assertEquals(SECOND, limiter.tryAcquire("a", 0));
+        assertEquals(SECOND / 2, limiter.tryAcquire("a", SECOND / 2));
+        assertEquals(0, limiter.tryAcquire("a", SECOND));
+        assertTrue(limiter.tryAcquire("a", SECOND) > 0);
+        assertEquals(0, limiter.tryAcquire("b", SECOND));
+    }
+
+    @Test
+    void refillIsCappedAtCapacity() {
+        LoginRateLimiter limiter = new LoginRateLimiter(2, Duration.ofSeconds(1), 100, 1);
+        limiter.tryAcquire("a", 0);
+
+        assertEquals(0, limiter.tryAcquire("a", 100 * SECOND));
+        assertEquals(0, limiter.tryAcquire("a", 100 * SECOND));
+        assertTrue(limiter.tryAcquire("a", 100 * SECOND) > 0);
+    }
+
+    @Test
+    void waitNanosNeitherTakesATokenNorCreatesABucket() {
+        LoginRateLimiter limiter = new LoginRateLimiter(1, Duration.ofSeconds(1), 100, 1);
+
+        assertEquals(0, limiter.waitNanos("a", 0));
+        assertEquals(0, limiter.size());
+        assertEquals(0, limiter.tryAcquire("a", 0));
+        assertEquals(SECOND, limiter.waitNanos("a", 0));
+        assertEquals(SECOND, limiter.waitNanos("a", 0));
+        assertEquals(0, limiter.waitNanos("a", SECOND));
+        assertEquals(0, limiter.tryAcquire("a", SECOND));
+    }
+
+    @Test
+    void evictsBucketsIdleLongEnoughToHaveRefilled() {
+        LoginRateLimiter limiter = new LoginRateLimiter(2, Duration.ofSeconds(1), 100, 1);
+        limiter.tryAcquire("a", 0);
+        limiter.tryAcquire("b", SECOND);
+        assertEquals(2, limiter.size());
+
+        limiter.tryAcquire("c", 2 * SECOND);
+        assertEquals(2, limiter.size());
+        assertEquals(0, limiter.waitNanos("a", 2 * SECOND));
+
+        limiter.tryAcquire("d", 10 * SECOND);
+        assertEquals(1, limiter.size());
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedBucketsOverTheSizeCap() {
+        LoginRateLimiter limiter = new LoginRateLimiter(1, Duration.ofHours(1), 2, 1);
+        limiter.tryAcquire("a", 0);
+        limiter.tryAcquire("b", 0);
+        limiter.tryAcquire("a", 0);
+
+        limiter.tryAcquire("c", 0);
+        assertEquals(2, limiter.size());
+        assertTrue(limiter.waitNanos("a", 0) > 0);
+        assertEquals(0, limiter.waitNanos("b", 0));
+    }
+}
@@ -0,0 +1,81 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import javax.servlet.ServletException;
+import java.io.IOException;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+class LoginThrottleFilterTests {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final LoginThrottle throttle = new LoginThrottle(
+            new LoginRateLimiter(3, Duration.ofHours(1), 100, 4),
+            new LoginRateLimiter(2, Duration.ofHours(1), 100, 4),
+            meterRegistry);
+
+    private final LoginThrottleFilter filter = new LoginThrottleFilter("/login", "username", throttle);
+
+    @Test
+    void addressOverItsLimitGetsATooManyRequests() throws IOException, ServletException {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(HttpStatus.OK.value(), login("10.0.0.1", "user" + i).getStatus());
+        }
+
+        MockHttpServletResponse response = login("10.0.0.1", "other");
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+        assertNotNull(response.getHeader("Retry-After"));
+        assertEquals(1, meterRegistry.get("login.throttled").tag("limit", "ip").counter().count());
+        assertEquals(HttpStatus.OK.value(), login("10.0.0.2", "other").getStatus());
+    }
+
+    @Test
+    void successfulAttemptsDoNotChargeTheUsername() throws IOException, ServletException {
+        for (int i = 0; i < 3; i++) {
+            assertEquals(HttpStatus.OK.value(), login("10.0.1." + i, "alice").getStatus());
+        }
+    }
+
+    @Test
+    void failuresThrottleTheUsernameFromEveryAddress() throws IOException, ServletException {
+        throttle.recordFailure("alice");
+        throttle.recordFailure(" Alice ");
+
+        MockHttpServletResponse response = login("10.0.0.1", "ALICE");
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), response.getStatus());
+        assertEquals(1, meterRegistry.get("login.throttled").tag("limit", "username").counter().count());
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS.value(), login("10.0.0.2", "alice").getStatus());
+        assertEquals(HttpStatus.OK.value(), login("10.0.0.1", "bob").getStatus());
+    }
+
+    @Test
+    void otherRequestsPassThrough() throws IOException, ServletException {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/login");
+        request.setServletPath("/login");
+        MockFilterChain chain = new MockFilterChain();
+        for (int i = 0; i < 5; i++) {
+            filter.doFilter(request, new MockHttpServletResponse(), chain);
+            assertNotNull(chain.getRequest());
+            chain.reset();
+        }
+    }
+
+    private MockHttpServletResponse login(String address, String username) throws IOException, ServletException {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/login");
+        request.setServletPath("/login");
+        request.setRemoteAddr(address);
+        request.setParameter("username", username);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filter.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
@@ -0,0 +1,85 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.hibernate.Cache;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.RoleDAO;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "app.l2-cache.enabled=true")
+class PasswordUpgradeCacheTests {
+
+    private static final String ROLES_REGION = User.class.getName() + ".roles";
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private RoleDAO roleDAO;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private long upgraderId;
+    private long bystanderId;
+
+    @BeforeEach
+    void setUp() {
+        upgraderId = userDAO.save(user("upgrader")).getUserId();
+        bystanderId = userDAO.save(user("bystander")).getUserId();
+        entityManagerFactory.getCache().evictAll();
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            for (long id : List.of(upgraderId, bystanderId)) {
+                userDAO.findById(id).orElseThrow().getRoles().size();
+            }
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (String username : List.of("upgrader", "bystander")) {
+            User user = userDAO.findByUsername(username);
+            if (user != null) {
+                userDAO.delete(user);
+            }
+        }
+    }
+
+    @Test
+    void upgradingOneHashKeepsOtherUsersCached() {
+        Cache cache = entityManagerFactory.getCache().unwrap(Cache.class);
+        assertTrue(cache.containsEntity(User.class, bystanderId));
+        assertTrue(cache.containsCollection(ROLES_REGION, bystanderId));
+
+        userDetailsService.updatePassword(userDetailsService.loadUserByUsername("upgrader"), "{noop}upgraded");
+
+        assertTrue(cache.containsEntity(User.class, bystanderId));
+        assertTrue(cache.containsCollection(ROLES_REGION, bystanderId));
+        assertEquals("{noop}upgraded", userDAO.findById(upgraderId).orElseThrow().getPassword());
+        assertEquals("{noop}upgraded", userDetailsService.loadUserByUsername("upgrader").getPassword());
+    }
+
+    private User user(String username) {
+        return new User("Name", "Surname", (byte) 30, username + "@mail.ru", username, "{noop}password",
+                new HashSet<>(roleDAO.findByRole("ROLE_USER")));
+    }
+}
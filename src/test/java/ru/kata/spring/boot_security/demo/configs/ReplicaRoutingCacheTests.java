@@ -0,0 +1,161 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.RoleDAO;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.persistence.EntityManagerFactory;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingCacheTests.PRIMARY_URL,
+        "app.datasource.replicas.enabled=true",
+        "app.datasource.replicas.urls=" + ReplicaRoutingCacheTests.REPLICA_URL,
+        "app.datasource.replicas.health-query=select count(*) from user",
+        "app.datasource.replicas.health-interval=PT1H",
+        "app.l2-cache.enabled=true"})
+class ReplicaRoutingCacheTests {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:cached_primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+            + "NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    static final String REPLICA_URL = "jdbc:h2:mem:cached_replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+            + "NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private RoleDAO roleDAO;
+
+    @Autowired
+    private DataSource primaryDataSource;
+
+    @Autowired
+    private ReplicaRoutingDataSource routing;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private long readerId;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        readerId = userDAO.save(user("reader")).getUserId();
+        replicate();
+        entityManagerFactory.getCache().evictAll();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        User user = userDAO.findByUsername("reader");
+        if (user != null) {
+            userDAO.delete(user);
+        }
+    }
+
+    @Test
+    void cacheMissesReadFromReplica() throws SQLException {
+        onReplica("update user set name = 'Replica' where username = 'reader'");
+        long replicaConnections = routing.getReplicaConnectionCount();
+
+        assertEquals("Replica", userService.getDetailById(readerId).getName());
+        assertEquals(replicaConnections + 1, routing.getReplicaConnectionCount());
+    }
+
+    @Test
+    void cachedEntitiesAreServedWithoutAConnection() {
+        userService.getDetailById(readerId);
+        long replicaConnections = routing.getReplicaConnectionCount();
+        long primaryConnections = routing.getPrimaryConnectionCount();
+
+        assertEquals("Name", userService.getDetailById(readerId).getName());
+        assertEquals(replicaConnections, routing.getReplicaConnectionCount());
+        assertEquals(primaryConnections, routing.getPrimaryConnectionCount());
+    }
+
+    @Test
+    void ownWriteIsVisibleWhileTheReplicaLags() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN")));
+        rename("Primary");
+        entityManagerFactory.getCache().evictAll();
+
+        assertEquals("Primary", userService.getDetailByUsername("reader").getName());
+        assertEquals("Primary", userService.getDetailById(readerId).getName());
+    }
+
+    @Test
+    void committedWriteRefreshesTheEntityCacheForEveryone() {
+        userService.getDetailById(readerId);
+        rename("Primary");
+        long replicaConnections = routing.getReplicaConnectionCount();
+
+        assertEquals("Primary", userService.getDetailById(readerId).getName());
+        assertEquals(replicaConnections, routing.getReplicaConnectionCount());
+    }
+
+    private void rename(String name) {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            User reader = userService.getById(readerId);
+            reader.setName(name);
+            userService.update(reader);
+        });
+    }
+
+    private void replicate() throws SQLException {
+        List<String> script = new ArrayList<>();
+        try (Connection primary = primaryDataSource.getConnection();
+             Statement statement = primary.createStatement();
+             ResultSet rows = statement.executeQuery("script")) {
+            while (rows.next()) {
+                script.add(rows.getString(1));
+            }
+        }
+        onReplica("drop all objects");
+        for (String sql : script) {
+            onReplica(sql);
+        }
+        routing.checkHealth();
+        assertEquals(1, routing.getHealthyReplicaCount());
+    }
+
+    private static void onReplica(String sql) throws SQLException {
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Statement statement = replica.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private User user(String username) {
+        return new User("Name", "Surname", (byte) 30, username + "@mail.ru", username, "{noop}password",
+                new HashSet<>(roleDAO.findByRole("ROLE_USER")));
+    }
+}
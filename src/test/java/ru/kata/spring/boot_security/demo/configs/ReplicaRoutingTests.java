@@ -0,0 +1,184 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.AuthorityUtils;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UserDetailsService;
+import ru.kata.spring.boot_security.demo.dao.RoleDAO;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.dto.UserDetailView;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import javax.servlet.http.Cookie;
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+@SpringBootTest(properties = {
+        "spring.datasource.url=" + ReplicaRoutingTests.PRIMARY_URL,
+        "app.datasource.replicas.enabled=true",
+        "app.datasource.replicas.urls=" + ReplicaRoutingTests.REPLICA_URL,
+        "app.datasource.replicas.health-query=select count(*) from user",
+        "app.datasource.replicas.health-interval=PT1H",
+        "app.l2-cache.enabled=false"})
+class ReplicaRoutingTests {
+
+    static final String PRIMARY_URL = "jdbc:h2:mem:routing_primary;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+            + "NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+    static final String REPLICA_URL = "jdbc:h2:mem:routing_replica;MODE=MySQL;DATABASE_TO_LOWER=TRUE;"
+            + "NON_KEYWORDS=USER;DB_CLOSE_DELAY=-1;DB_CLOSE_ON_EXIT=FALSE";
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private RoleDAO roleDAO;
+
+    @Autowired
+    private DataSource primaryDataSource;
+
+    @Autowired
+    private ReplicaRoutingDataSource routing;
+
+    @Autowired
+    private UserDetailsService userDetailsService;
+
+    @BeforeEach
+    void setUp() throws SQLException {
+        userDAO.save(user("reader"));
+        replicate();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        for (String username : new String[]{"reader", "writer", "fresh"}) {
+            User user = userDAO.findByUsername(username);
+            if (user != null) {
+                userDAO.delete(user);
+            }
+        }
+    }
+
+    @Test
+    void readOnlyTransactionsUseReplica() throws SQLException {
+        onReplica("update user set name = 'Replica' where username = 'reader'");
+
+        assertEquals("Replica", userService.getDetailByUsername("reader").getName());
+    }
+
+    @Test
+    void writesGoToPrimary() throws SQLException {
+        userDAO.save(user("writer"));
+
+        assertEquals(1, count(primaryDataSource.getConnection(), "writer"));
+        assertEquals(0, count(DriverManager.getConnection(REPLICA_URL, "sa", ""), "writer"));
+    }
+
+    @Test
+    void readsStayOnPrimaryAfterOwnWrite() {
+        SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                "admin", null, AuthorityUtils.createAuthorityList("ROLE_ADMIN")));
+        userDAO.save(user("fresh"));
+
+        assertNotNull(userService.getDetailByUsername("fresh"));
+
+        SecurityContextHolder.clearContext();
+        assertNull(userService.getDetailByUsername("fresh"));
+    }
+
+    @Test
+    void primaryReadWindowCookieKeepsReadsOnPrimaryOnAnyNode() throws Exception {
+        MockHttpServletResponse writeResponse = new MockHttpServletResponse();
+        PrimaryReadWindow writer = new PrimaryReadWindow(new MockHttpServletRequest(), writeResponse,
+                Long.MAX_VALUE);
+        PrimaryReadWindow.binding(() -> userDAO.save(user("fresh")), writer).call();
+        Cookie cookie = writeResponse.getCookie(PrimaryReadWindow.COOKIE);
+        assertNotNull(cookie);
+
+        MockHttpServletRequest nextRequest = new MockHttpServletRequest();
+        nextRequest.setCookies(cookie);
+        PrimaryReadWindow reader = new PrimaryReadWindow(nextRequest, new MockHttpServletResponse(),
+                System.currentTimeMillis() + 5000);
+        assertNotNull(PrimaryReadWindow.binding(() -> userService.getDetailByUsername("fresh"), reader).call());
+        assertNull(userService.getDetailByUsername("fresh"));
+    }
+
+    @Test
+    void loginLookupFallsBackToPrimaryForUserMissingOnReplica() {
+        userDAO.save(user("fresh"));
+
+        assertNull(userService.getDetailByUsername("fresh"));
+        assertEquals("fresh", userDetailsService.loadUserByUsername("fresh").getUsername());
+    }
+
+    @Test
+    void unhealthyReplicaFallsBackToPrimary() throws SQLException {
+        onReplica("drop all objects");
+        routing.checkHealth();
+
+        assertEquals(0, routing.getHealthyReplicaCount());
+        UserDetailView reader = userService.getDetailByUsername("reader");
+        assertEquals("reader", reader.getUsername());
+    }
+
+    private void replicate() throws SQLException {
+        List<String> script = new ArrayList<>();
+        try (Connection primary = primaryDataSource.getConnection();
+             Statement statement = primary.createStatement();
+             ResultSet rows = statement.executeQuery("script")) {
+            while (rows.next()) {
+                script.add(rows.getString(1));
+            }
+        }
+        onReplica("drop all objects");
+        for (String sql : script) {
+            onReplica(sql);
+        }
+        routing.checkHealth();
+        assertEquals(1, routing.getHealthyReplicaCount());
+    }
+
+    private static void onReplica(String sql) throws SQLException {
+        try (Connection replica = DriverManager.getConnection(REPLICA_URL, "sa", "");
+             Statement statement = replica.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static int count(Connection connection, String username) throws SQLException {
+        try (connection;
+             Statement statement = connection.createStatement();
+             ResultSet rows = statement.executeQuery(
+                     "select count(*) from user where username = '" + username + "'")) {
+            rows.next();
+            return rows.getInt(1);
+        }
+    }
+
+    private User user(String username) {
+        return new User("Name", "Surname", (byte) 30, username + "@mail.ru", username, "{noop}password",
+                new HashSet<>(roleDAO.findByRole("ROLE_USER")));
+    }
+}
@@ -0,0 +1,141 @@
+package ru.kata.spring.boot_security.demo.configs;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.kata.spring.boot_security.demo.dao.RefreshTokenDAO;
+import ru.kata.spring.boot_security.demo.dao.RoleDAO;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.dto.TokenResponse;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.UserService;
+
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertDoesNotThrow;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+@SpringBootTest(properties = {
+        "app.hashing.bcrypt-strength=4",
+        "app.security.api-auth=token",
+        "app.security.token.secret=MDEyMzQ1Njc4OWFiY2RlZjAxMjM0NTY3ODlhYmNkZWY="
+})
+class TokenServiceTests {
+
+    @Autowired
+    private TokenService tokenService;
+
+    @Autowired
+    private UserDetailsServiceImpl userDetailsService;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private RoleDAO roleDAO;
+
+    @Autowired
+    private RefreshTokenDAO refreshTokenDAO;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = userDAO.save(new User("Token", "Holder", (byte) 30, "holder@mail.ru", "holder",
+                "{noop}password", new HashSet<>(roleDAO.findByRole("ROLE_USER")))).getUserId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDAO.findById(userId).ifPresent(userDAO::delete);
+        for (String username : List.of("holder", "renamed")) {
+            refreshTokenDAO.deleteByUsername(username);
+        }
+    }
+
+    @Test
+    void refreshRotatesThePair() {
+        TokenResponse first = issue();
+
+        TokenResponse second = tokenService.refresh(first.getRefreshToken());
+
+        assertNotEquals(first.getRefreshToken(), second.getRefreshToken());
+        assertDoesNotThrow(() -> tokenService.refresh(second.getRefreshToken()));
+    }
+
+    @Test
+    void reusingARefreshTokenRevokesTheWholeFamily() {
+        TokenResponse first = issue();
+        TokenResponse second = tokenService.refresh(first.getRefreshToken());
+
+        assertThrows(IllegalArgumentException.class, () -> tokenService.refresh(first.getRefreshToken()));
+        assertThrows(IllegalArgumentException.class, () -> tokenService.refresh(second.getRefreshToken()));
+    }
+
+    @Test
+    void passwordChangeRevokesRefreshTokens() throws Exception {
+        TokenResponse issued = issue();
+
+        patch("{\"password\":\"changed\"}");
+
+        assertThrows(IllegalArgumentException.class, () -> tokenService.refresh(issued.getRefreshToken()));
+    }
+
+    @Test
+    void otherEditsKeepRefreshTokens() throws Exception {
+        TokenResponse issued = issue();
+
+        patch("{\"name\":\"Edited\"}");
+
+        assertDoesNotThrow(() -> tokenService.refresh(issued.getRefreshToken()));
+    }
+
+    @Test
+    void loginRehashKeepsRefreshTokens() {
+        TokenResponse issued = issue();
+
+        userDetailsService.updatePassword(userDetailsService.loadUserByUsername("holder"), "{noop}rehashed");
+
+        assertDoesNotThrow(() -> tokenService.refresh(issued.getRefreshToken()));
+    }
+
+    @Test
+    void renameRevokesTokensOfThePreviousUsername() throws Exception {
+        TokenResponse issued = issue();
+
+        patch("{\"username\":\"renamed\"}");
+
+        assertEquals(0, refreshTokenDAO.deleteByUsername("holder"));
+        assertThrows(IllegalArgumentException.class, () -> tokenService.refresh(issued.getRefreshToken()));
+    }
+
+    @Test
+    void deleteRevokesRefreshTokens() {
+        TokenResponse issued = issue();
+
+        userService.deleteById(userId);
+
+        assertEquals(0, refreshTokenDAO.deleteByUsername("holder"));
+        assertThrows(IllegalArgumentException.class, () -> tokenService.refresh(issued.getRefreshToken()));
+    }
+
+    private TokenResponse issue() {
+        return tokenService.issue(userDetailsService.loadUserByUsername("holder"));
+    }
+
+    private void patch(String json) throws Exception {
+        assertEquals(200, userService.patch(userId, objectMapper.readTree(json), null).getStatusCodeValue());
+    }
+}
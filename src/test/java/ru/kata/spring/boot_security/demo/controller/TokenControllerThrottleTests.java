@@ -0,0 +1,84 @@
+package ru.kata.spring.boot_security.demo.controller;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.BadCredentialsException;
+import ru.kata.spring.boot_security.demo.Exception.ExceptionInfo;
+import ru.kata.spring.boot_security.demo.Exception.LoginThrottledException;
+import ru.kata.spring.boot_security.demo.Exception.RestExceptionHandler;
+import ru.kata.spring.boot_security.demo.configs.LoginRateLimiter;
+import ru.kata.spring.boot_security.demo.configs.LoginThrottle;
+import ru.kata.spring.boot_security.demo.configs.TokenService;
+import ru.kata.spring.boot_security.demo.configs.UserDetailsServiceImpl;
+import ru.kata.spring.boot_security.demo.dto.TokenRequest;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class TokenControllerThrottleTests {
+
+    private final AuthenticationManager authenticationManager = mock(AuthenticationManager.class);
+
+    private final LoginThrottle throttle = new LoginThrottle(
+            new LoginRateLimiter(10, Duration.ofHours(1), 100, 4),
+            new LoginRateLimiter(2, Duration.ofHours(1), 100, 4),
+            new SimpleMeterRegistry());
+
+    private final TokenController controller = new TokenController(mock(TokenService.class), authenticationManager,
+            mock(UserDetailsServiceImpl.class),
+            new StaticListableBeanFactory(Map.of("loginThrottle", throttle)).getBeanProvider(LoginThrottle.class));
+
+    @Test
+    void repeatedFailuresAreThrottledWithTooManyRequests() {
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("Bad credentials"));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, controller.token(request("alice"), from("10.0.0.1")).getStatusCode());
+        assertEquals(HttpStatus.UNAUTHORIZED, controller.token(request("alice"), from("10.0.0.1")).getStatusCode());
+        LoginThrottledException e = assertThrows(LoginThrottledException.class,
+                () -> controller.token(request("alice"), from("10.0.0.1")));
+        verify(authenticationManager, times(2)).authenticate(any());
+
+        ResponseEntity<ExceptionInfo> response = new RestExceptionHandler().loginThrottled(e);
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, response.getStatusCode());
+        assertEquals(Long.toString(e.getRetryAfterSeconds()), response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        assertThrows(LoginThrottledException.class, () -> controller.token(request("alice"), from("10.0.0.2")));
+        assertEquals(HttpStatus.UNAUTHORIZED, controller.token(request("bob"), from("10.0.0.1")).getStatusCode());
+    }
+
+    @Test
+    void failuresFromManyAddressesAddUpPerUsername() {
+        when(authenticationManager.authenticate(any())).thenThrow(new BadCredentialsException("Bad credentials"));
+
+        assertEquals(HttpStatus.UNAUTHORIZED, controller.token(request("carol"), from("10.0.1.1")).getStatusCode());
+        assertEquals(HttpStatus.UNAUTHORIZED, controller.token(request("carol"), from("10.0.1.2")).getStatusCode());
+        assertThrows(LoginThrottledException.class, () -> controller.token(request("carol"), from("10.0.1.3")));
+        verify(authenticationManager, times(2)).authenticate(any());
+    }
+
+    private static TokenRequest request(String username) {
+        TokenRequest request = new TokenRequest();
+        request.setUsername(username);
+        request.setPassword("wrong");
+        return request;
+    }
+
+    private static MockHttpServletRequest from(String address) {
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/auth/token");
+        request.setRemoteAddr(address);
+        return request;
+    }
+}
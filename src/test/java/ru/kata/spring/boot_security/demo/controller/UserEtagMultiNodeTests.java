@@ -0,0 +1,32 @@
+package ru.kata.spring.boot_security.demo.controller;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+
+@SpringBootTest(properties = "app.etag.single-node=false")
+@AutoConfigureMockMvc(addFilters = false)
+class UserEtagMultiNodeTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Test
+    void listHasNoEtagAndIgnoresIfNoneMatch() throws Exception {
+        MvcResult result = mockMvc.perform(get("/api/users").header(HttpHeaders.IF_NONE_MATCH, "*")).andReturn();
+        MockHttpServletResponse response = mockMvc.perform(asyncDispatch(result)).andReturn().getResponse();
+
+        assertEquals(200, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.ETAG));
+    }
+}
@@ -0,0 +1,109 @@
+package ru.kata.spring.boot_security.demo.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.kata.spring.boot_security.demo.dao.RoleDAO;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.UserChangeTracker;
+
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+
+@SpringBootTest(properties = "app.hashing.bcrypt-strength=4")
+@AutoConfigureMockMvc(addFilters = false)
+class UserEtagTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private RoleDAO roleDAO;
+
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = userDAO.save(new User("Tagged", "Surname", (byte) 30, "tagged@mail.ru", "tagged", "{noop}password",
+                new HashSet<>(roleDAO.findByRole("ROLE_USER")))).getUserId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDAO.findById(userId).ifPresent(userDAO::delete);
+    }
+
+    @Test
+    void matchingIfNoneMatchOnAUserIsNotModified() throws Exception {
+        MockHttpServletResponse first = send(get("/api/users/{id}", userId));
+        String etag = first.getHeader(HttpHeaders.ETAG);
+        assertEquals(200, first.getStatus());
+        assertEquals(UserChangeTracker.userEtag(userId, userDAO.findById(userId).orElseThrow().getVersion()), etag);
+
+        assertEquals(304, send(get("/api/users/{id}", userId).header(HttpHeaders.IF_NONE_MATCH, etag)).getStatus());
+    }
+
+    @Test
+    void writeInvalidatesTheRememberedUserEtag() throws Exception {
+        String etag = send(get("/api/users/{id}", userId)).getHeader(HttpHeaders.ETAG);
+        assertEquals(200, send(patchName("Changed")).getStatus());
+
+        MockHttpServletResponse after = send(get("/api/users/{id}", userId).header(HttpHeaders.IF_NONE_MATCH, etag));
+        assertEquals(200, after.getStatus());
+        assertNotEquals(etag, after.getHeader(HttpHeaders.ETAG));
+    }
+
+    @Test
+    void listIsNotModifiedUntilAUserChanges() throws Exception {
+        String etag = send(get("/api/users")).getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        assertEquals(304, send(get("/api/users").header(HttpHeaders.IF_NONE_MATCH, etag)).getStatus());
+        assertEquals(200, send(get("/api/users").param("limit", "10")
+                .header(HttpHeaders.IF_NONE_MATCH, etag)).getStatus());
+
+        assertEquals(200, send(patchName("Changed")).getStatus());
+        assertEquals(200, send(get("/api/users").header(HttpHeaders.IF_NONE_MATCH, etag)).getStatus());
+    }
+
+    @Test
+    void staleOrWeakIfMatchIsAPreconditionFailure() throws Exception {
+        String etag = send(get("/api/users/{id}", userId)).getHeader(HttpHeaders.ETAG);
+
+        assertEquals(412, send(patchName("Weak").header(HttpHeaders.IF_MATCH, "W/" + etag)).getStatus());
+        assertEquals(412, send(patchName("Other").header(HttpHeaders.IF_MATCH,
+                UserChangeTracker.userEtag(userId + 1, 0))).getStatus());
+        assertEquals(200, send(patchName("Fresh").header(HttpHeaders.IF_MATCH, etag)).getStatus());
+        assertEquals(412, send(patchName("Stale").header(HttpHeaders.IF_MATCH, etag)).getStatus());
+    }
+
+    private MockHttpServletRequestBuilder patchName(String name) {
+        return patch("/api/users/{id}", userId).contentType("application/merge-patch+json")
+                .content("{\"name\":\"" + name + "\"}");
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        return result.getResponse();
+    }
+}
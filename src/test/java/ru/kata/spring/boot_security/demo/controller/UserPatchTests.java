@@ -0,0 +1,159 @@
+package ru.kata.spring.boot_security.demo.controller;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import ru.kata.spring.boot_security.demo.dao.RoleDAO;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+import ru.kata.spring.boot_security.demo.service.UserChangeTracker;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.patch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+
+@SpringBootTest(properties = "app.hashing.bcrypt-strength=4")
+@AutoConfigureMockMvc(addFilters = false)
+class UserPatchTests {
+
+    private static final String MERGE_PATCH = "application/merge-patch+json";
+    private static final String STORED_HASH = "{noop}password";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private RoleDAO roleDAO;
+
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        userId = userDAO.save(new User("Patchy", "Surname", (byte) 30, "patchy@mail.ru", "patchy", STORED_HASH,
+                new HashSet<>(roleDAO.findByRole("ROLE_USER")))).getUserId();
+    }
+
+    @AfterEach
+    void tearDown() {
+        userDAO.findById(userId).ifPresent(userDAO::delete);
+    }
+
+    @Test
+    void absentFieldsAreKept() throws Exception {
+        assertEquals(200, send(patchUser("{\"name\":\"Patched\"}")).getStatus());
+
+        User user = load();
+        assertEquals("Patched", user.getName());
+        assertEquals("Surname", user.getSurname());
+        assertEquals("patchy@mail.ru", user.getEmail());
+        assertEquals(STORED_HASH, user.getPassword());
+        assertEquals(Set.of("ROLE_USER"), roleNames(user));
+    }
+
+    @Test
+    void nullClearsAField() throws Exception {
+        assertEquals(200, send(patchUser("{\"email\":null}")).getStatus());
+
+        User user = load();
+        assertNull(user.getEmail());
+        assertEquals("Patchy", user.getName());
+    }
+
+    @Test
+    void nullForARequiredFieldIsRejected() throws Exception {
+        assertEquals(400, send(patchUser("{\"age\":null}")).getStatus());
+        assertEquals(400, send(patchUser("{\"username\":null}")).getStatus());
+        assertEquals("patchy", load().getUsername());
+    }
+
+    @Test
+    void roleListReplacesTheRoles() throws Exception {
+        assertEquals(200, send(patchUser("{\"roles\":[{\"role\":\"ROLE_ADMIN\"}]}")).getStatus());
+
+        assertEquals(Set.of("ROLE_ADMIN"), roleNames(load()));
+    }
+
+    @Test
+    void blankPasswordKeepsTheHashAndAnythingElseIsHashed() throws Exception {
+        assertEquals(200, send(patchUser("{\"password\":\"\"}")).getStatus());
+        assertEquals(STORED_HASH, load().getPassword());
+
+        assertEquals(200, send(patchUser("{\"password\":\"" + STORED_HASH + "\"}")).getStatus());
+        String hash = load().getPassword();
+        assertNotEquals(STORED_HASH, hash);
+        assertTrue(hash.startsWith("{bcrypt}"));
+    }
+
+    @Test
+    void putHashesASubmittedPasswordEvenIfItEqualsTheStoredHash() throws Exception {
+        assertEquals(200, send(putUser("")).getStatus());
+        assertEquals(STORED_HASH, load().getPassword());
+
+        assertEquals(200, send(putUser(STORED_HASH)).getStatus());
+        assertTrue(load().getPassword().startsWith("{bcrypt}"));
+    }
+
+    @Test
+    void staleOrWeakIfMatchIsAPreconditionFailure() throws Exception {
+        long version = load().getVersion();
+        String current = UserChangeTracker.userEtag(userId, version);
+
+        assertEquals(412, send(patchUser("{\"name\":\"Stale\"}")
+                .header(HttpHeaders.IF_MATCH, UserChangeTracker.userEtag(userId, version + 1))).getStatus());
+        assertEquals(412, send(patchUser("{\"name\":\"Weak\"}")
+                .header(HttpHeaders.IF_MATCH, "W/" + current)).getStatus());
+        assertEquals("Patchy", load().getName());
+
+        assertEquals(200, send(patchUser("{\"name\":\"Fresh\"}").header(HttpHeaders.IF_MATCH, current)).getStatus());
+        assertEquals(412, send(patchUser("{\"name\":\"Again\"}").header(HttpHeaders.IF_MATCH, current)).getStatus());
+        assertEquals("Fresh", load().getName());
+    }
+
+    private MockHttpServletRequestBuilder patchUser(String body) {
+        return patch("/api/users/{id}", userId).contentType(MERGE_PATCH).content(body);
+    }
+
+    private MockHttpServletRequestBuilder putUser(String password) {
+        return put("/api/users/{id}", userId).contentType(MediaType.APPLICATION_JSON)
+                .content("{\"name\":\"Patchy\",\"surname\":\"Surname\",\"age\":30,\"email\":\"patchy@mail.ru\","
+                        + "\"username\":\"patchy\",\"password\":\"" + password + "\","
+                        + "\"roles\":[{\"role\":\"ROLE_USER\"}]}");
+    }
+
+    private MockHttpServletResponse send(MockHttpServletRequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        if (result.getRequest().isAsyncStarted()) {
+            result = mockMvc.perform(asyncDispatch(result)).andReturn();
+        }
+        return result.getResponse();
+    }
+
+    private User load() {
+        return userDAO.findByUsername(userDAO.findById(userId).orElseThrow().getUsername());
+    }
+
+    private static Set<String> roleNames(User user) {
+        return user.getRoles().stream().map(Role::getRole).collect(Collectors.toSet());
+    }
+}
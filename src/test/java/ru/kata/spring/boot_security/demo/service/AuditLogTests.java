@@ -0,0 +1,98 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.unit.DataSize;
+import ru.kata.spring.boot_security.demo.dto.AuditEntry;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditLogTests {
+
+    @TempDir
+    Path directory;
+
+    private AuditLog auditLog;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        auditLog = new AuditLog(Jackson2ObjectMapperBuilder.json().build(), new SimpleMeterRegistry(),
+                directory.toString(), 64, 256, DataSize.ofMegabytes(1), 4, Duration.ofHours(1),
+                Duration.ofMillis(100), DataSize.ofMegabytes(1));
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        auditLog.shutdown();
+    }
+
+    @Test
+    void updateRecordsTheChangedFieldsOnly() throws InterruptedException {
+        User user = user("alice", "Alice", "ROLE_USER");
+        Map<String, Object> before = AuditLog.snapshot(user);
+        user.setName("Alicia");
+        user.setRoles(Set.of(new Role("ROLE_USER"), new Role("ROLE_ADMIN")));
+
+        auditLog.record(UserChangedEvent.Type.UPDATED, before, user);
+        AuditEntry entry = awaitEntries(1).get(0);
+
+        assertEquals(Set.of("name", "roles"), entry.getChanges().keySet());
+        assertEquals("Alice", entry.getChanges().get("name").getFrom());
+        assertEquals("Alicia", entry.getChanges().get("name").getTo());
+        assertEquals(List.of("ROLE_USER"), entry.getChanges().get("roles").getFrom());
+        assertEquals(List.of("ROLE_ADMIN", "ROLE_USER"), entry.getChanges().get("roles").getTo());
+        assertEquals("Alicia", entry.getState().get("name"));
+    }
+
+    @Test
+    void entriesWithoutAPreviousStateHaveNoChanges() throws InterruptedException {
+        auditLog.record(UserChangedEvent.Type.CREATED, user("bob", "Bob", "ROLE_USER"));
+
+        assertNull(awaitEntries(1).get(0).getChanges());
+    }
+
+    @Test
+    void idleWriterWakesForASingleEntry() throws InterruptedException {
+        auditLog.record(UserChangedEvent.Type.CREATED, user("carol", "Carol", "ROLE_USER"));
+        awaitEntries(1);
+        TimeUnit.MILLISECONDS.sleep(50);
+
+        auditLog.record(UserChangedEvent.Type.CREATED, user("dave", "Dave", "ROLE_USER"));
+        assertEquals(2, awaitEntries(2).size());
+    }
+
+    private List<AuditEntry> awaitEntries(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        List<AuditEntry> entries = auditLog.query(0, 100, null).getEntries();
+        while (entries.size() < count && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+            entries = auditLog.query(0, 100, null).getEntries();
+        }
+        assertTrue(entries.size() >= count, "audit entries were not written");
+        return entries;
+    }
+
+    private static User user(String username, String name, String role) {
+        User user = new User(name, "Surname", (byte) 30, username + "@mail.ru", username, "password",
+                Set.of(new Role(role)));
+        user.setUserId(1L);
+        return user;
+    }
+}
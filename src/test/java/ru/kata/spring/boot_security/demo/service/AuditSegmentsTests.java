@@ -0,0 +1,152 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ru.kata.spring.boot_security.demo.dto.AuditEntry;
+import ru.kata.spring.boot_security.demo.dto.AuditPage;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class AuditSegmentsTests {
+
+    private static final long NO_SCAN_LIMIT = Long.MAX_VALUE;
+
+    private final ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().build();
+
+    @TempDir
+    Path directory;
+
+    private AuditSegments segments;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (segments != null) {
+            segments.close();
+        }
+    }
+
+    @Test
+    void reopenTruncatesATornTailAndContinuesTheSequence() throws IOException {
+        segments = open(1 << 20, 4);
+        segments.append(entries(1, 3));
+        segments.close();
+        Path segment = files().get(0);
+        Files.write(segment, "{\"sequence\":4,\"act".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        segments = new AuditSegments(directory, 1 << 20, 4, objectMapper);
+        assertEquals(3, segments.open());
+        assertTrue(new String(Files.readAllBytes(segment), StandardCharsets.UTF_8).endsWith("}\n"));
+        segments.append(entries(4, 1));
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), sequences(segments.read(0, 10, null, NO_SCAN_LIMIT)));
+    }
+
+    @Test
+    void secondWriterIsRefused() throws IOException {
+        segments = open(1 << 20, 4);
+
+        AuditSegments second = new AuditSegments(directory, 1 << 20, 4, objectMapper);
+        assertThrows(IllegalStateException.class, second::open);
+    }
+
+    @Test
+    void rotatesBySizeAndKeepsTheNewestSegments() throws IOException {
+        segments = open(1, 3);
+        for (long sequence = 1; sequence <= 5; sequence++) {
+            segments.append(entries(sequence, 1));
+        }
+
+        List<String> names = files().stream().map(path -> path.getFileName().toString()).collect(Collectors.toList());
+        assertEquals(3, names.size());
+        assertTrue(names.get(0).endsWith("00000000000000000003.log"));
+        assertEquals(List.of(3L, 4L, 5L), sequences(segments.read(0, 10, null, NO_SCAN_LIMIT)));
+        assertEquals(List.of(5L), sequences(segments.read(4, 10, null, NO_SCAN_LIMIT)));
+    }
+
+    @Test
+    void readSkipsUnparseableLines() throws IOException {
+        segments = open(1 << 20, 4);
+        segments.append(entries(1, 2));
+        Files.write(files().get(0), "not json\n".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+        segments.append(entries(3, 2));
+        Files.write(files().get(0), "{\"sequence\":5,".getBytes(StandardCharsets.UTF_8), StandardOpenOption.APPEND);
+
+        AuditPage page = segments.read(0, 10, null, NO_SCAN_LIMIT);
+        assertEquals(List.of(1L, 2L, 3L, 4L), sequences(page));
+        assertEquals(4, page.getNext());
+    }
+
+    @Test
+    void readSeeksToTheCursorInsideASegment() throws IOException {
+        segments = open(1 << 20, 4);
+        segments.append(entries(1, 1000));
+
+        assertEquals(List.of(501L, 502L), sequences(segments.read(500, 2, null, NO_SCAN_LIMIT)));
+        assertEquals(List.of(1000L), sequences(segments.read(999, 2, null, NO_SCAN_LIMIT)));
+        assertEquals(List.of(), sequences(segments.read(1000, 2, null, NO_SCAN_LIMIT)));
+    }
+
+    @Test
+    void filteredReadStopsAtTheScanBudgetAndReturnsACursor() throws IOException {
+        segments = open(1 << 20, 4);
+        segments.append(entries(1, 1000));
+        long lineBytes = Files.size(files().get(0)) / 1000;
+
+        AuditPage page = segments.read(0, 10, 700L, lineBytes * 100);
+        assertTrue(page.getEntries().isEmpty());
+        assertTrue(page.getNext() >= 95 && page.getNext() <= 105, "next was " + page.getNext());
+
+        long after = page.getNext();
+        List<Long> found = new ArrayList<>();
+        while (after < 1000) {
+            page = segments.read(after, 10, 700L, lineBytes * 100);
+            found.addAll(sequences(page));
+            after = page.getNext();
+        }
+        assertEquals(List.of(700L), found);
+    }
+
+    private AuditSegments open(long segmentBytes, int maxSegments) throws IOException {
+        AuditSegments opened = new AuditSegments(directory, segmentBytes, maxSegments, objectMapper);
+        opened.open();
+        return opened;
+    }
+
+    private List<Path> files() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    private static List<AuditEntry> entries(long firstSequence, int count) {
+        List<AuditEntry> entries = new ArrayList<>(count);
+        for (long sequence = firstSequence; sequence < firstSequence + count; sequence++) {
+            entries.add(new AuditEntry(sequence, Instant.EPOCH, "admin", UserChangedEvent.Type.UPDATED, sequence,
+                    "user" + sequence, Map.of("name", "Name"), null));
+        }
+        return entries;
+    }
+
+    private static List<Long> sequences(AuditPage page) {
+        return page.getEntries().stream().map(AuditEntry::getSequence).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,125 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.dto.AuditEntry;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@SpringBootTest(properties = "app.hashing.bcrypt-strength=4")
+class BulkImportTests {
+
+    private static final String HEADER = "username,password,name,surname,age,email,roles\n";
+
+    @Autowired
+    private BulkUserService bulkUserService;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private AuditLog auditLog;
+
+    @AfterEach
+    void tearDown() {
+        for (String username : List.of("bulkone", "bulktwo", "bulkbad", "bulkage")) {
+            User user = userDAO.findByUsername(username);
+            if (user != null) {
+                userDAO.delete(user);
+            }
+        }
+    }
+
+    @Test
+    void rowThatFailsTheInsertDoesNotFailItsChunk() throws IOException {
+        String tooLongEmail = "x".repeat(300) + "@mail.ru";
+        JsonNode results = importCsv(HEADER
+                + "bulkone,password,One,Surname,30,one@mail.ru,ROLE_USER\n"
+                + "bulkbad,password,Bad,Surname,30," + tooLongEmail + ",ROLE_USER\n"
+                + "bulktwo,password,Two,Surname,30,two@mail.ru,ROLE_USER|ROLE_ADMIN\n");
+
+        assertEquals(3, results.size());
+        assertEquals("CREATED", results.get(0).get("status").asText());
+        assertEquals("FAILED", results.get(1).get("status").asText());
+        assertTrue(results.get(1).get("error").asText().startsWith("Write failed"));
+        assertEquals("CREATED", results.get(2).get("status").asText());
+        assertNotNull(userDAO.findByUsername("bulkone"));
+        assertNotNull(userDAO.findByUsername("bulktwo"));
+        assertNull(userDAO.findByUsername("bulkbad"));
+    }
+
+    @Test
+    void missingAgeIsARowError() throws IOException {
+        JsonNode results = importCsv(HEADER
+                + "bulkage,password,Age,Surname,,age@mail.ru,ROLE_USER\n"
+                + "\n"
+                + "bulkone,password,One,Surname,30,one@mail.ru,ROLE_USER\n");
+
+        assertEquals(2, results.size());
+        assertEquals("FAILED", results.get(0).get("status").asText());
+        assertEquals("Field cannot be null: age", results.get(0).get("error").asText());
+        assertEquals("CREATED", results.get(1).get("status").asText());
+        assertEquals(2, results.get(1).get("row").asInt());
+        assertNull(userDAO.findByUsername("bulkage"));
+    }
+
+    @Test
+    void quotedFieldsAreImported() throws IOException {
+        JsonNode results = importCsv(HEADER
+                + "\"bulkone\",\"pass,word\",\"One\",Surname,30,one@mail.ru,\"ROLE_USER\"\n");
+
+        assertEquals("CREATED", results.get(0).get("status").asText());
+        assertEquals("One", userDAO.findByUsername("bulkone").getName());
+    }
+
+    @Test
+    void bulkInsertAndDeleteAreAudited() throws Exception {
+        JsonNode results = importCsv(HEADER + "bulkone,password,One,Surname,30,one@mail.ru,ROLE_USER\n");
+        long id = results.get(0).get("userId").asLong();
+
+        bulkUserService.deleteAll(List.of(id));
+
+        List<AuditEntry> entries = awaitEntries(id, 2);
+        assertEquals(List.of(UserChangedEvent.Type.CREATED, UserChangedEvent.Type.DELETED),
+                entries.stream().map(AuditEntry::getType).collect(Collectors.toList()));
+        assertEquals("One", entries.get(0).getState().get("name"));
+        assertEquals("bulkone", entries.get(1).getUsername());
+    }
+
+    private List<AuditEntry> awaitEntries(long userId, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        List<AuditEntry> entries = auditLog.query(0, 100, userId).getEntries();
+        while (entries.size() < count && System.nanoTime() < deadline) {
+            TimeUnit.MILLISECONDS.sleep(5);
+            entries = auditLog.query(0, 100, userId).getEntries();
+        }
+        return entries;
+    }
+
+    private JsonNode importCsv(String csv) throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        bulkUserService.importCsv(new ByteArrayInputStream(csv.getBytes(StandardCharsets.UTF_8)), output);
+        return objectMapper.readTree(output.toByteArray());
+    }
+}
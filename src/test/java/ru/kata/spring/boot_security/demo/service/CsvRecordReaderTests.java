@@ -0,0 +1,49 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CsvRecordReaderTests {
+
+    @Test
+    void splitsPlainFieldsAndKeepsEmptyOnes() throws IOException {
+        Reader reader = new StringReader("a,,c\r\nd,e,\n");
+
+        assertEquals(List.of("a", "", "c"), BulkUserServiceImpl.readCsvRecord(reader));
+        assertEquals(List.of("d", "e", ""), BulkUserServiceImpl.readCsvRecord(reader));
+        assertNull(BulkUserServiceImpl.readCsvRecord(reader));
+    }
+
+    @Test
+    void quotedFieldsKeepCommasQuotesAndLineBreaks() throws IOException {
+        Reader reader = new StringReader("\"Smith, John\",\"say \"\"hi\"\"\",\"two\nlines\"\nnext\n");
+
+        assertEquals(List.of("Smith, John", "say \"hi\"", "two\nlines"), BulkUserServiceImpl.readCsvRecord(reader));
+        assertEquals(List.of("next"), BulkUserServiceImpl.readCsvRecord(reader));
+    }
+
+    @Test
+    void blankLineIsASingleEmptyField() throws IOException {
+        Reader reader = new StringReader("a\n\n\r\nb");
+
+        assertEquals(List.of("a"), BulkUserServiceImpl.readCsvRecord(reader));
+        assertEquals(List.of(""), BulkUserServiceImpl.readCsvRecord(reader));
+        assertEquals(List.of(""), BulkUserServiceImpl.readCsvRecord(reader));
+        assertEquals(List.of("b"), BulkUserServiceImpl.readCsvRecord(reader));
+        assertNull(BulkUserServiceImpl.readCsvRecord(reader));
+    }
+
+    @Test
+    void unterminatedQuoteIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BulkUserServiceImpl.readCsvRecord(new StringReader("\"open,field\n")));
+    }
+}
@@ -0,0 +1,55 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataIntegrityViolationException;
+import ru.kata.spring.boot_security.demo.dao.RoleDAO;
+import ru.kata.spring.boot_security.demo.dao.SchemaSeedDAO;
+import ru.kata.spring.boot_security.demo.model.Role;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+@SpringBootTest
+class RoleSeederTests {
+
+    @Autowired
+    private RoleSeeder roleSeeder;
+
+    @Autowired
+    private RoleDAO roleDAO;
+
+    @Autowired
+    private SchemaSeedDAO schemaSeedDAO;
+
+    @Test
+    void roleNamesAreUnique() {
+        assertThrows(DataIntegrityViolationException.class, () -> roleDAO.saveAndFlush(new Role("ROLE_USER")));
+        assertEquals(1, roleDAO.findByRole("ROLE_USER").size());
+    }
+
+    @Test
+    void reseedingKeepsOneRowPerRole() {
+        schemaSeedDAO.deleteAll();
+
+        roleSeeder.seed();
+
+        assertEquals(1, roleDAO.findByRole("ROLE_USER").size());
+        assertEquals(1, roleDAO.findByRole("ROLE_ADMIN").size());
+        assertEquals(1, schemaSeedDAO.count());
+    }
+
+    @Test
+    void losingTheSeedingRaceReloadsTheWinnersRoles() {
+        RoleService roleService = mock(RoleService.class);
+        doThrow(new DataIntegrityViolationException("uk_role_role")).when(roleService).addDefaultRole();
+
+        new RoleSeeder(roleService, mock(SchemaSeedDAO.class), "1").seed();
+
+        verify(roleService).reloadRoles();
+    }
+}
@@ -0,0 +1,58 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.Test;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class UserChangeTrackerTests {
+
+    private final UserChangeTracker tracker = new UserChangeTracker(2, true);
+
+    @Test
+    void etagReadBeforeAChangeIsNotRemembered() {
+        long stamp = tracker.stamp();
+        tracker.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, "alice"));
+
+        tracker.remember(1L, "alice", UserChangeTracker.userEtag(1L, 0), stamp);
+
+        assertNull(tracker.etagById(1L));
+        assertNull(tracker.etagByUsername("alice"));
+    }
+
+    @Test
+    void changeForgetsTheUserAndMovesTheListEtag() {
+        String list = tracker.listEtag(50, null);
+        tracker.remember(1L, "alice", UserChangeTracker.userEtag(1L, 0), tracker.stamp());
+        assertEquals("\"1-0\"", tracker.etagByUsername("alice"));
+
+        tracker.onUserChanged(new UserChangedEvent(UserChangedEvent.Type.UPDATED, 1L, "alice"));
+
+        assertNull(tracker.etagById(1L));
+        assertNotEquals(list, tracker.listEtag(50, null));
+    }
+
+    @Test
+    void evictsTheLeastRecentlyUsedUser() {
+        tracker.remember(1L, "alice", "\"1-0\"", tracker.stamp());
+        tracker.remember(2L, "bob", "\"2-0\"", tracker.stamp());
+        tracker.etagById(1L);
+        tracker.remember(3L, "carol", "\"3-0\"", tracker.stamp());
+
+        assertEquals("\"1-0\"", tracker.etagById(1L));
+        assertNull(tracker.etagByUsername("bob"));
+        assertEquals("\"3-0\"", tracker.etagByUsername("carol"));
+    }
+
+    @Test
+    void parsesOnlyStrongEtagsForTheSameUser() {
+        assertEquals(7L, UserChangeTracker.parseVersion("\"1-7\"", 1));
+        assertNull(UserChangeTracker.parseVersion("*", 1));
+        assertNull(UserChangeTracker.parseVersion(null, 1));
+        assertEquals(-1L, UserChangeTracker.parseVersion("W/\"1-7\"", 1));
+        assertEquals(-1L, UserChangeTracker.parseVersion("\"2-7\"", 1));
+        assertEquals(-1L, UserChangeTracker.parseVersion("\"1-x\"", 1));
+    }
+}
@@ -0,0 +1,131 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import ru.kata.spring.boot_security.demo.dao.RoleDAO;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.dto.UserDetailView;
+import ru.kata.spring.boot_security.demo.dto.UserFilter;
+import ru.kata.spring.boot_security.demo.dto.UserPage;
+import ru.kata.spring.boot_security.demo.dto.UserSummary;
+import ru.kata.spring.boot_security.demo.model.Role;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import javax.persistence.EntityManagerFactory;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@SpringBootTest(properties = "app.l2-cache.enabled=false")
+class UserListQueryCountTests {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private RoleDAO roleDAO;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+    }
+
+    @AfterEach
+    void tearDown() {
+        new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+            List<Long> ids = userDAO.findAll().stream().map(User::getUserId).collect(Collectors.toList());
+            if (!ids.isEmpty()) {
+                userDAO.deleteRoleLinksByUserIdIn(ids);
+                userDAO.deleteByUserIdIn(ids);
+            }
+        });
+    }
+
+    @Test
+    void listingUsersRunsConstantNumberOfStatements() {
+        List<Role> roles = roleDAO.findAll();
+        userDAO.save(new User("Name", "Surname", (byte) 30, "multi@mail.ru", "multirole", "{noop}password",
+                new HashSet<>(roles)));
+        int created = 1;
+        for (int size : new int[]{10, 1_000, 10_000}) {
+            created += createUsers(created, size - created, roles);
+
+            statistics.clear();
+            UserPage<UserSummary> page = userService.findPage(0L, size, UserFilter.none());
+            int roleCount = page.getUsers().stream().mapToInt(user -> user.getRoles().size()).sum();
+            assertEquals(size, page.getUsers().size());
+            assertEquals(size - 1 + roles.size(), roleCount);
+            assertEquals(2, statistics.getPrepareStatementCount(), "page query count for " + size + " users");
+
+            statistics.clear();
+            List<User> all = userService.findAll();
+            int fetchedRoles = all.stream().mapToInt(user -> user.getRoles().size()).sum();
+            assertEquals(size, all.size());
+            assertEquals(size, all.stream().map(User::getUserId).distinct().count());
+            assertEquals(size - 1 + roles.size(), fetchedRoles);
+            assertEquals(1, statistics.getPrepareStatementCount(), "findAll query count for " + size + " users");
+        }
+    }
+
+    @Test
+    void detailReadsUseTheProjectionWithoutLoadingEntities() {
+        List<Role> roles = roleDAO.findAll();
+        long id = userDAO.save(new User("Name", "Surname", (byte) 30, "detail@mail.ru", "detail",
+                "{noop}password", new HashSet<>(roles))).getUserId();
+        Set<String> roleNames = roles.stream().map(Role::getRole).collect(Collectors.toSet());
+
+        statistics.clear();
+        UserDetailView byId = userService.getDetailById(id);
+        UserDetailView byUsername = userService.getDetailByUsername("detail");
+
+        assertEquals("detail", byId.getUsername());
+        assertEquals(roleNames, Set.copyOf(byId.getRoles()));
+        assertEquals(id, byUsername.getUserId());
+        assertEquals(roleNames, Set.copyOf(byUsername.getRoles()));
+        assertEquals(4, statistics.getPrepareStatementCount());
+        assertEquals(0, statistics.getEntityLoadCount());
+    }
+
+    private int createUsers(int offset, int count, List<Role> roles) {
+        List<User> users = new ArrayList<>(count);
+        for (int i = offset; i < offset + count; i++) {
+            Role role = roles.get(i % roles.size());
+            users.add(new User("Name", "Surname", (byte) 30, "user" + i + "@mail.ru",
+                    "user" + toLetters(i), "{noop}password", new HashSet<>(List.of(role))));
+        }
+        userDAO.saveAll(users);
+        return count;
+    }
+
+    private static String toLetters(int number) {
+        StringBuilder letters = new StringBuilder();
+        do {
+            letters.append((char) ('a' + number % 26));
+            number /= 26;
+        } while (number > 0);
+        return letters.toString();
+    }
+}
@@ -0,0 +1,104 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.Test;
+import ru.kata.spring.boot_security.demo.dto.UserSearchHit;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UserTrigramIndexTests {
+
+    @Test
+    void matchesSubstringsAnywhereAndTwoCharacterPrefixes() {
+        UserTrigramIndex index = new UserTrigramIndex();
+        index.put(hit(1, "johnsmith", "John", "Smith", "john@mail.ru"));
+        index.put(hit(2, "maryjones", "Mary", "Jones", "mary@mail.ru"));
+
+        assertEquals(List.of(1L), ids(index.search("SMIT", 10)));
+        assertEquals(List.of(1L, 2L), ids(index.search("jo", 10)));
+        assertEquals(List.of(1L, 2L), ids(index.search("mail.ru", 10)));
+        assertEquals(List.of(1L), ids(index.search("mail.ru", 1)));
+        assertEquals(List.of(), ids(index.search("hn", 10)));
+        assertEquals(List.of(), ids(index.search("x", 10)));
+    }
+
+    @Test
+    void putReplacesTheUsersPreviousText() {
+        UserTrigramIndex index = new UserTrigramIndex();
+        index.put(hit(1, "alice", "Alice", "Brown", "alice@mail.ru"));
+        int trigrams = index.trigramCount();
+        index.put(hit(1, "alice", "Alice", "Green", "alice@mail.ru"));
+
+        assertEquals(1, index.size());
+        assertEquals(List.of(), ids(index.search("brown", 10)));
+        assertEquals(List.of(1L), ids(index.search("green", 10)));
+        assertEquals(trigrams, index.trigramCount());
+    }
+
+    @Test
+    void removeDropsEmptyPostingsAndReusesTheSlot() {
+        UserTrigramIndex index = new UserTrigramIndex();
+        index.put(hit(1, "alice", "Alice", "Brown", "alice@mail.ru"));
+        index.put(hit(2, "bob", "Bob", "Stone", "bob@mail.ru"));
+        int trigrams = index.trigramCount();
+
+        assertTrue(index.remove(1));
+        assertFalse(index.remove(1));
+        assertEquals(List.of(), ids(index.search("alice", 10)));
+        assertTrue(index.trigramCount() < trigrams);
+
+        index.put(hit(3, "carol", "Carol", "White", "carol@mail.ru"));
+        assertEquals(List.of(3L, 2L), ids(index.search("@mail", 10)));
+        assertEquals(2, index.size());
+    }
+
+    @Test
+    void postingsStayConsistentAcrossGrowthAndRemoval() {
+        UserTrigramIndex index = new UserTrigramIndex();
+        for (long id = 0; id < 3000; id++) {
+            index.put(hit(id, "user" + id, "Name", "Surname", "user" + id + "@mail.ru"));
+        }
+        for (long id = 0; id < 3000; id += 2) {
+            assertTrue(index.remove(id));
+        }
+
+        assertEquals(1500, index.size());
+        assertEquals(List.of(1001L), ids(index.search("user1001@", 10)));
+        assertEquals(List.of(), ids(index.search("user1000@", 10)));
+        assertEquals(1500, index.search("surname", 5000).size());
+    }
+
+    @Test
+    void longIntMapKeepsProbeChainsIntactAfterDeletion() {
+        UserTrigramIndex.LongIntMap map = new UserTrigramIndex.LongIntMap();
+        int count = 5000;
+        for (int i = 0; i < count; i++) {
+            map.put(key(i), i);
+        }
+        for (int i = 0; i < count; i += 3) {
+            assertEquals(i, map.remove(key(i)));
+        }
+        for (int i = 0; i < count; i++) {
+            assertEquals(i % 3 == 0 ? -1 : i, map.remove(key(i)));
+        }
+        map.put(key(7), 42);
+        assertEquals(42, map.remove(key(7)));
+        assertEquals(-1, map.remove(key(7)));
+    }
+
+    private static long key(int i) {
+        return (long) i << 20;
+    }
+
+    private static UserSearchHit hit(long id, String username, String name, String surname, String email) {
+        return new UserSearchHit(id, username, name, surname, email);
+    }
+
+    private static List<Long> ids(List<UserSearchHit> hits) {
+        return hits.stream().map(UserSearchHit::getUserId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,113 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.SpyBean;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.validation.BeanPropertyBindingResult;
+import ru.kata.spring.boot_security.demo.configs.BoundedPasswordEncoder;
+import ru.kata.spring.boot_security.demo.dao.RoleDAO;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+
+@SpringBootTest(properties = "app.hashing.bcrypt-strength=4")
+class UserWriteTransactionTests {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private RoleDAO roleDAO;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @SpyBean
+    private BoundedPasswordEncoder passwordEncoder;
+
+    @SpyBean
+    private UsernameRegistry usernameRegistry;
+
+    private final List<Boolean> hashedInTransaction = new ArrayList<>();
+    private final List<Boolean> checkedInTransaction = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        doAnswer(invocation -> {
+            hashedInTransaction.add(TransactionSynchronizationManager.isActualTransactionActive());
+            return invocation.callRealMethod();
+        }).when(passwordEncoder).encode(any());
+        doAnswer(invocation -> {
+            checkedInTransaction.add(TransactionSynchronizationManager.isActualTransactionActive());
+            return invocation.callRealMethod();
+        }).when(usernameRegistry).isTaken(anyString(), any());
+    }
+
+    @AfterEach
+    void tearDown() {
+        for (String username : List.of("writer", "rewritten")) {
+            User user = userDAO.findByUsername(username);
+            if (user != null) {
+                userDAO.delete(user);
+            }
+        }
+    }
+
+    @Test
+    void createHashesOutsideTheTransaction() {
+        User user = user("writer");
+
+        assertEquals(200, userService.create(user, new BeanPropertyBindingResult(user, "user"))
+                .getStatusCodeValue());
+
+        assertEquals(List.of(false), hashedInTransaction);
+        assertEquals(List.of(false), checkedInTransaction);
+    }
+
+    @Test
+    void editHashesAndChecksTheUsernameOutsideTheTransaction() {
+        long id = userDAO.save(user("writer")).getUserId();
+        User edited = user("rewritten");
+
+        assertEquals(200, userService.edit(id, edited, new BeanPropertyBindingResult(edited, "user"), null)
+                .getStatusCodeValue());
+
+        assertEquals(List.of(false), hashedInTransaction);
+        assertEquals(List.of(false), checkedInTransaction);
+        assertEquals(id, userDAO.findByUsername("rewritten").getUserId());
+    }
+
+    @Test
+    void patchHashesAndChecksTheUsernameOutsideTheTransaction() throws Exception {
+        long id = userDAO.save(user("writer")).getUserId();
+
+        assertEquals(200, userService.patch(id,
+                objectMapper.readTree("{\"username\":\"rewritten\",\"password\":\"changed\"}"), null)
+                .getStatusCodeValue());
+
+        assertEquals(List.of(false), hashedInTransaction);
+        assertEquals(List.of(false), checkedInTransaction);
+        assertEquals(id, userDAO.findByUsername("rewritten").getUserId());
+    }
+
+    private User user(String username) {
+        return new User("Name", "Surname", (byte) 30, username + "@mail.ru", username, "password",
+                new HashSet<>(roleDAO.findByRole("ROLE_USER")));
+    }
+}
@@ -0,0 +1,62 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
+import org.springframework.validation.BeanPropertyBindingResult;
+import ru.kata.spring.boot_security.demo.Exception.RestExceptionHandler;
+import ru.kata.spring.boot_security.demo.Exception.UserUsernameExistException;
+import ru.kata.spring.boot_security.demo.dao.RoleDAO;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+
+@SpringBootTest
+class UsernameConflictTests {
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private UserDAO userDAO;
+
+    @Autowired
+    private RoleDAO roleDAO;
+
+    @MockBean
+    private UsernameRegistry usernameRegistry;
+
+    @AfterEach
+    void tearDown() {
+        User user = userDAO.findByUsername("racer");
+        if (user != null) {
+            userDAO.delete(user);
+        }
+    }
+
+    @Test
+    void uniqueConstraintViolationAfterAPassedCheckIsAConflict() {
+        userDAO.save(user());
+        when(usernameRegistry.isTaken("racer", null)).thenReturn(false, true);
+
+        User duplicate = user();
+        UserUsernameExistException e = assertThrows(UserUsernameExistException.class,
+                () -> userService.create(duplicate, new BeanPropertyBindingResult(duplicate, "user")));
+
+        assertEquals(HttpStatus.CONFLICT, new RestExceptionHandler().usernameExists(e).getStatusCode());
+        assertEquals(1, userDAO.findUserIdsByUsername("racer").size());
+    }
+
+    private User user() {
+        return new User("Name", "Surname", (byte) 30, "racer@mail.ru", "racer", "{noop}password",
+                new HashSet<>(roleDAO.findByRole("ROLE_USER")));
+    }
+}
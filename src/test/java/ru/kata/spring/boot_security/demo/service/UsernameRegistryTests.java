@@ -0,0 +1,108 @@
+package ru.kata.spring.boot_security.demo.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import ru.kata.spring.boot_security.demo.dao.UserDAO;
+import ru.kata.spring.boot_security.demo.event.UserChangedEvent;
+import ru.kata.spring.boot_security.demo.model.User;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class UsernameRegistryTests {
+
+    private final UserDAO userDAO = mock(UserDAO.class);
+    private final MeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UsernameRegistry registry;
+
+    @BeforeEach
+    void setUp() {
+        when(userDAO.findUserIdsByUsername(anyString())).thenReturn(List.of(1L));
+        registry = new UsernameRegistry(userDAO, mock(PlatformTransactionManager.class), meterRegistry,
+                1000, 0.01);
+    }
+
+    @Test
+    void neverReportsAKnownUsernameAsAbsent() {
+        List<String> loaded = usernames("loaded", 2000);
+        when(userDAO.count()).thenReturn((long) loaded.size());
+        when(userDAO.streamUsernames()).thenReturn(loaded.stream());
+        registry.rebuild();
+        List<String> created = usernames("Created", 2000);
+        created.forEach(username -> registry.onUserChanged(event(UserChangedEvent.Type.CREATED, username, null)));
+
+        loaded.forEach(username -> assertTrue(registry.isTaken(username, null)));
+        created.forEach(username -> assertTrue(registry.isTaken(username.toLowerCase(), null)));
+        assertEquals(0, lookups("absent"));
+    }
+
+    @Test
+    void rebuildKeepsUsernamesAndCountsAddedWhileStreaming() {
+        registry.onUserChanged(event(UserChangedEvent.Type.CREATED, "before", null));
+        registry.onUserChanged(event(UserChangedEvent.Type.DELETED, "gone", null));
+        List<String> concurrent = usernames("concurrent", 3);
+        when(userDAO.count()).thenReturn(2L);
+        when(userDAO.streamUsernames()).thenReturn(Stream.of("before", "existing").peek(username -> {
+            if ("existing".equals(username)) {
+                concurrent.forEach(name -> registry.onUserChanged(event(UserChangedEvent.Type.CREATED, name, null)));
+            }
+        }));
+
+        registry.rebuild();
+
+        assertEquals(5, changes("added"));
+        assertEquals(0, changes("removed"));
+        concurrent.forEach(username -> assertTrue(registry.isTaken(username, null)));
+        assertEquals(0, lookups("absent"));
+    }
+
+    @Test
+    void renameCountsTheOldUsernameAsRemoved() {
+        when(userDAO.streamUsernames()).thenReturn(Stream.of("alice"));
+        registry.rebuild();
+
+        registry.onUserChanged(event(UserChangedEvent.Type.UPDATED, "alice", "alice"));
+        registry.onUserChanged(event(UserChangedEvent.Type.UPDATED, "ALICE", "alice"));
+        assertEquals(0, changes("removed"));
+
+        registry.onUserChanged(event(UserChangedEvent.Type.UPDATED, "alicia", "alice"));
+        assertEquals(1, changes("removed"));
+        assertEquals(2, changes("added"));
+        assertTrue(registry.isTaken("alicia", null));
+    }
+
+    private double changes(String kind) {
+        return meterRegistry.get("username.filter.changes").tag("kind", kind).gauge().value();
+    }
+
+    private double lookups(String result) {
+        return meterRegistry.get("username.filter.lookups").tag("result", result).counter().count();
+    }
+
+    private static UserChangedEvent event(UserChangedEvent.Type type, String username, String previousUsername) {
+        User user = new User();
+        user.setUserId(1L);
+        user.setUsername(username);
+        return type == UserChangedEvent.Type.DELETED
+                ? new UserChangedEvent(type, 1L, username)
+                : new UserChangedEvent(type, user, previousUsername);
+    }
+
+    private static List<String> usernames(String prefix, int count) {
+        List<String> usernames = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            usernames.add(prefix + i);
+        }
+        return usernames;
+    }
+}